@@ -0,0 +1,72 @@
+package frc.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.swervelib.util.CTREModuleState;
+import frc.swervelib.util.SwerveSettings;
+
+/**
+ * {@link CTREModuleState#optimize}, the object version the old drive path used against the
+ * allocation free one the kinematics engine uses. Random targets against continuous current
+ * angles, a lot of them right at a wrap.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CTREModuleStateBenchmark {
+    private double[] targets;
+    private double[] currents;
+    private double[] speeds;
+    private SwerveModuleState[] states;
+    private Rotation2d[] current_rotations;
+    private final double[] out = new double[2];
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        Random random = Inputs.random();
+        targets = Inputs.headings(random);
+        currents = Inputs.continuousAngles(random);
+        speeds = Inputs.speeds(random, SwerveSettings.Swerve.maxSpeed);
+
+        // Built up front, so the object benchmark only pays for what optimize itself allocates.
+        states = new SwerveModuleState[Inputs.SIZE];
+        current_rotations = new Rotation2d[Inputs.SIZE];
+        for (int i = 0; i < Inputs.SIZE; i++) {
+            states[i] = new SwerveModuleState(speeds[i], Rotation2d.fromDegrees(targets[i]));
+            current_rotations[i] = Rotation2d.fromDegrees(currents[i]);
+        }
+    }
+
+    @Benchmark
+    public SwerveModuleState optimizeObjects() {
+        int i = index++ & Inputs.MASK;
+        return CTREModuleState.optimize(states[i], current_rotations[i]);
+    }
+
+    @Benchmark
+    public void optimizeArray(Blackhole blackhole) {
+        int i = index++ & Inputs.MASK;
+        CTREModuleState.optimize(speeds[i], targets[i], currents[i], out);
+        blackhole.consume(out[0]);
+        blackhole.consume(out[1]);
+    }
+}
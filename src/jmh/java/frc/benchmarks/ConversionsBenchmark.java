@@ -0,0 +1,79 @@
+package frc.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import frc.swervelib.math.Conversions;
+import frc.swervelib.util.SwerveSettings;
+
+/**
+ * The {@link Conversions} calls every module makes every loop, with the real gear ratios and
+ * wheel size. Inputs are sensor counts like the Falcons report them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionsBenchmark {
+    private double[] angle_counts;
+    private double[] angle_degrees;
+    private double[] velocity_counts;
+    private double[] speeds;
+    private double[] position_counts;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        Random random = Inputs.random();
+        angle_degrees = Inputs.continuousAngles(random);
+        speeds = Inputs.speeds(random, SwerveSettings.Swerve.maxSpeed);
+
+        angle_counts = new double[Inputs.SIZE];
+        velocity_counts = new double[Inputs.SIZE];
+        position_counts = new double[Inputs.SIZE];
+        for (int i = 0; i < Inputs.SIZE; i++) {
+            angle_counts[i] = Conversions.degreesToFalcon(angle_degrees[i], SwerveSettings.Swerve.angleGearRatio);
+            velocity_counts[i] = Conversions.MPSToFalcon(speeds[i], SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+            // Up to about a match's worth of driving.
+            position_counts[i] = random.nextDouble() * 4.0e6;
+        }
+    }
+
+    @Benchmark
+    public double falconToDegrees() {
+        return Conversions.falconToDegrees(angle_counts[index++ & Inputs.MASK], SwerveSettings.Swerve.angleGearRatio);
+    }
+
+    @Benchmark
+    public double degreesToFalcon() {
+        return Conversions.degreesToFalcon(angle_degrees[index++ & Inputs.MASK], SwerveSettings.Swerve.angleGearRatio);
+    }
+
+    @Benchmark
+    public double falconToMPS() {
+        return Conversions.falconToMPS(velocity_counts[index++ & Inputs.MASK], SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+    }
+
+    @Benchmark
+    public double MPSToFalcon() {
+        return Conversions.MPSToFalcon(speeds[index++ & Inputs.MASK], SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+    }
+
+    @Benchmark
+    public double falconToMeters() {
+        return Conversions.falconToMeters(position_counts[index++ & Inputs.MASK], SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+    }
+}
@@ -0,0 +1,76 @@
+package frc.benchmarks;
+
+import java.util.Random;
+
+import frc.swervelib.util.SwerveSettings;
+
+/**
+ * Precomputed benchmark inputs, fixed seed so every run sees the same values. Benchmarks walk
+ * through an array with {@link #MASK} so the JIT can't constant fold a single input.
+ */
+final class Inputs {
+    static final int SIZE = 1024;
+    static final int MASK = SIZE - 1;
+    static final int MODULES = 4;
+
+    private Inputs() {}
+
+    static Random random() {
+        return new Random(4645);
+    }
+
+    /**
+     * @return headings in degrees, uniform over [-180, 180)
+     */
+    static double[] headings(Random random) {
+        double[] out = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            out[i] = random.nextDouble() * 360.0 - 180.0;
+        }
+        return out;
+    }
+
+    /**
+     * Integrated (continuous) module angles like the angle motors report after a match of
+     * spinning, a quarter of them within 2 degrees of a multiple of 180 where optimize wraps.
+     * @return angles in degrees, in [-1080, 1080]
+     */
+    static double[] continuousAngles(Random random) {
+        double[] out = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            if (random.nextInt(4) == 0) {
+                out[i] = (random.nextInt(13) - 6) * 180.0 + random.nextDouble() * 4.0 - 2.0;
+            } else {
+                out[i] = random.nextDouble() * 2160.0 - 1080.0;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return speeds in [-max, max], one in ten exactly zero like a released stick
+     */
+    static double[] speeds(Random random, double max) {
+        double[] out = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            out[i] = random.nextInt(10) == 0 ? 0.0 : random.nextDouble() * 2.0 * max - max;
+        }
+        return out;
+    }
+
+    /**
+     * @return chassis requests, {vx, vy, omega} per entry, up to the drive's limits
+     */
+    static double[] chassisRequests(Random random) {
+        double[] out = new double[SIZE * 3];
+        double max_speed = SwerveSettings.Swerve.maxSpeed;
+        double max_omega = SwerveSettings.Swerve.maxAngularVelocity;
+        for (int i = 0; i < SIZE; i++) {
+            boolean stopped = random.nextInt(10) == 0;
+            out[i * 3] = stopped ? 0.0 : random.nextDouble() * 2.0 * max_speed - max_speed;
+            out[i * 3 + 1] = stopped ? 0.0 : random.nextDouble() * 2.0 * max_speed - max_speed;
+            out[i * 3 + 2] = stopped ? 0.0 : random.nextDouble() * 2.0 * max_omega - max_omega;
+        }
+        return out;
+    }
+}
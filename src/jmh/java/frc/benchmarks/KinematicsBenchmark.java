@@ -0,0 +1,83 @@
+package frc.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.swervelib.math.SwerveKinematicsEngine;
+import frc.swervelib.util.CTREModuleState;
+import frc.swervelib.util.SwerveModule;
+import frc.swervelib.util.SwerveSettings;
+
+/**
+ * Everything Swerve.drive() computes for one field relative request, all four modules: inverse
+ * kinematics, desaturate, optimize against the measured angle and the low speed angle hold. The
+ * engine version is what the robot runs, the WPILib version is the object based path it replaced.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KinematicsBenchmark {
+    private double[] requests;
+    private double[] yaws;
+    private double[] module_angles;
+    private final double[] last_angles = new double[Inputs.MODULES];
+    private SwerveKinematicsEngine engine;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        Random random = Inputs.random();
+        requests = Inputs.chassisRequests(random);
+        yaws = Inputs.continuousAngles(random);
+        module_angles = Inputs.continuousAngles(random);
+        engine = new SwerveKinematicsEngine(SwerveSettings.Swerve.moduleTranslations);
+    }
+
+    @Benchmark
+    public void engineDrive(Blackhole blackhole) {
+        int i = index++ & Inputs.MASK;
+        engine.toModuleStatesFieldRelative(requests[i * 3], requests[i * 3 + 1], requests[i * 3 + 2], yaws[i]);
+        engine.desaturate(SwerveSettings.Swerve.maxSpeed);
+        for (int mod = 0; mod < Inputs.MODULES; mod++) {
+            engine.optimize(mod, module_angles[(i + mod) & Inputs.MASK]);
+            double angle = SwerveModule.holdAngle(engine.getSpeed(mod), engine.getAngleDegrees(mod), last_angles[mod]);
+            last_angles[mod] = angle;
+            blackhole.consume(engine.getSpeed(mod));
+            blackhole.consume(angle);
+        }
+    }
+
+    @Benchmark
+    public void wpilibDrive(Blackhole blackhole) {
+        int i = index++ & Inputs.MASK;
+        SwerveModuleState[] states = SwerveSettings.Swerve.swerveKinematics.toSwerveModuleStates(
+            ChassisSpeeds.fromFieldRelativeSpeeds(requests[i * 3], requests[i * 3 + 1], requests[i * 3 + 2], Rotation2d.fromDegrees(yaws[i])));
+        SwerveDriveKinematics.desaturateWheelSpeeds(states, SwerveSettings.Swerve.maxSpeed);
+        for (int mod = 0; mod < Inputs.MODULES; mod++) {
+            SwerveModuleState state = CTREModuleState.optimize(states[mod], Rotation2d.fromDegrees(module_angles[(i + mod) & Inputs.MASK]));
+            double angle = SwerveModule.holdAngle(state.speedMetersPerSecond, state.angle.getDegrees(), last_angles[mod]);
+            last_angles[mod] = angle;
+            blackhole.consume(state.speedMetersPerSecond);
+            blackhole.consume(angle);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package frc.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import frc.swervelib.util.SwerveSensorSnapshot;
+import frc.swervelib.util.SwerveSettings;
+import frc.swervelib.util.SwerveSettings.VisionConstants;
+
+/**
+ * One odometry step as Swerve.periodic() does it: the sensors land in the snapshot, then the pose
+ * estimator integrates them. Modules drive at random speeds and headings, 20ms per step, so the
+ * estimator's pose history fills and evicts like it does on the robot. Plain
+ * {@link SwerveDriveOdometry} is there for comparison.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OdometryBenchmark {
+    private static final double PERIOD = 0.02;
+
+    private double[] angles;
+    private double[] speeds;
+    private double[] yaws;
+    private final double[] distances = new double[Inputs.MODULES];
+    private final SwerveModulePosition[] positions = new SwerveModulePosition[Inputs.MODULES];
+    private SwerveSensorSnapshot snapshot;
+    private SwerveDrivePoseEstimator estimator;
+    private SwerveDriveOdometry odometry;
+    private double now = 0.0;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        Random random = Inputs.random();
+        angles = Inputs.continuousAngles(random);
+        speeds = Inputs.speeds(random, SwerveSettings.Swerve.maxSpeed);
+        yaws = Inputs.continuousAngles(random);
+
+        snapshot = new SwerveSensorSnapshot(Inputs.MODULES);
+        estimator = new SwerveDrivePoseEstimator(
+            SwerveSettings.Swerve.swerveKinematics, new Rotation2d(), snapshot.copyModulePositions(positions), new Pose2d(),
+            VecBuilder.fill(VisionConstants.stateTranslationStdDev, VisionConstants.stateTranslationStdDev, VisionConstants.stateRotationStdDev),
+            VecBuilder.fill(VisionConstants.baseTranslationStdDev, VisionConstants.baseTranslationStdDev, VisionConstants.baseRotationStdDev));
+        odometry = new SwerveDriveOdometry(SwerveSettings.Swerve.swerveKinematics, new Rotation2d(), snapshot.copyModulePositions(positions));
+    }
+
+    private void step() {
+        int i = index++ & Inputs.MASK;
+        now += PERIOD;
+        snapshot.loadGyro(now, yaws[i]);
+        for (int mod = 0; mod < Inputs.MODULES; mod++) {
+            int at = (i + mod) & Inputs.MASK;
+            distances[mod] += speeds[at] * PERIOD;
+            snapshot.loadModule(mod, angles[at], speeds[at], distances[mod]);
+        }
+    }
+
+    @Benchmark
+    public Pose2d poseEstimator() {
+        step();
+        return estimator.updateWithTime(now, Rotation2d.fromDegrees(snapshot.getYawDegrees()), snapshot.copyModulePositions(positions));
+    }
+
+    @Benchmark
+    public Pose2d odometry() {
+        step();
+        return odometry.update(Rotation2d.fromDegrees(snapshot.getYawDegrees()), snapshot.copyModulePositions(positions));
+    }
+}
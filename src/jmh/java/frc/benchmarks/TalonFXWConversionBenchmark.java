@@ -0,0 +1,66 @@
+package frc.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.wpi.first.math.util.Units;
+import frc.bd_util.custom_talon.SensorUnits;
+import frc.bd_util.custom_talon.TalonFXWConfig;
+import frc.swervelib.util.SwerveSettings;
+
+/**
+ * TalonFXW's unit conversions, through {@link TalonFXWConfig} since a TalonFXW can't be made
+ * without a motor. Uses the drive motor's config, for every {@link SensorUnits}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TalonFXWConversionBenchmark {
+    @Param({"METRIC", "IMPERIAL", "CTRE"})
+    public SensorUnits units;
+
+    private TalonFXWConfig config;
+    private double[] shaft_rotations;
+    private double[] shaft_velocities;
+    private int index = 0;
+
+    @Setup
+    public void setup() {
+        config = new TalonFXWConfig(SwerveSettings.Swerve.driveGearRatio, Units.metersToInches(SwerveSettings.Swerve.wheelDiameter));
+
+        Random random = Inputs.random();
+        double[] speeds = Inputs.speeds(random, SwerveSettings.Swerve.maxSpeed);
+        shaft_rotations = new double[Inputs.SIZE];
+        shaft_velocities = new double[Inputs.SIZE];
+        for (int i = 0; i < Inputs.SIZE; i++) {
+            shaft_rotations[i] = random.nextDouble() * 2000.0;
+            // Wheel MPS back to shaft rotations per 100ms.
+            shaft_velocities[i] = speeds[i] / SwerveSettings.Swerve.wheelCircumference * SwerveSettings.Swerve.driveGearRatio / 10.0;
+        }
+    }
+
+    @Benchmark
+    public double distance() {
+        return config.toDistance(shaft_rotations[index++ & Inputs.MASK], units);
+    }
+
+    @Benchmark
+    public double velocity() {
+        return config.toVelocity(shaft_velocities[index++ & Inputs.MASK], units);
+    }
+}
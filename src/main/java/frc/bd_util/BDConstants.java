@@ -73,6 +73,55 @@ public final class BDConstants {
         }
     }
 
+    public static final class BD_MANAGER {
+        // Time BDManager.update() may spend per tick before slower tier items are deferred.
+        public static final long UPDATE_BUDGET_MICROS = 2000;
+    }
+
+    public static final class TELEMETRY {
+        // Records the publisher thread can fall behind by before they're dropped.
+        public static final int RING_CAPACITY = 1024;
+        // How long the publisher thread sleeps between drains, in milliseconds.
+        public static final long DRAIN_PERIOD_MS = 10;
+    }
+
+    public static final class CAN_MONITOR {
+        // Samples kept for the utilization history graph.
+        public static final int HISTORY_SIZE = 100;
+        // Alert once utilization has been above this fraction for ALERT_HOLD seconds.
+        public static final double ALERT_THRESHOLD = 0.7;
+        public static final double ALERT_HOLD = 1.0;
+        // roboRIO bus bitrate, and a worst case extended frame with 8 data bytes and bit stuffing.
+        public static final double BITRATE = 1e6;
+        public static final double BITS_PER_FRAME = 150;
+    }
+
+    public static final class LOOP_PROFILER {
+        // Default for the "LoopProfiler/enabled" switch.
+        public static final boolean ENABLED = true;
+        // Histogram buckets. Anything past the last bucket lands in it, max is still exact.
+        public static final int BUCKET_MICROS = 100;
+        public static final int BUCKETS = 250;
+        // Seconds between NetworkTables summaries, and how long a histogram collects before it's cleared.
+        public static final double PUBLISH_PERIOD = 1.0;
+        public static final double WINDOW = 10.0;
+    }
+
+    public static final class DATA_LOGGER {
+        // Logs go to the USB stick when the roboRIO has one mounted, otherwise onto the roboRIO.
+        public static final String USB_DIR = "/u/logs";
+        public static final String ROBOT_DIR = "/home/lvuser/logs";
+        // Oldest logs are deleted to keep each location under its quota.
+        public static final long USB_QUOTA_BYTES = 2L * 1024 * 1024 * 1024;
+        public static final long ROBOT_QUOTA_BYTES = 100L * 1024 * 1024;
+        public static final long MAX_FILE_BYTES = 32L * 1024 * 1024;
+        // Direct buffers shared by the loop and the writer thread, each one block.
+        public static final int BUFFER_BYTES = 64 * 1024;
+        public static final int BUFFERS = 8;
+        // A block is written at least this often, in seconds, so a brownout loses little.
+        public static final double FLUSH_PERIOD = 1.0;
+    }
+
     public static final class MISC {
         public static final String[] KEY_NAMES = {
             "null",
@@ -3,18 +3,50 @@ package frc.bd_util;
 import java.util.ArrayList;
 
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import frc.bd_util.BDConstants.BD_MANAGER;
 
+/**
+ * Updates every registered {@link BDUpdatable} and shows their statuses.<p>
+ * Each item is updated at its {@link UpdateRate}. Items in the slower tiers are spread over
+ * different ticks so they don't all land on the same one. Every tick, items are updated fastest
+ * tier first. Once {@link BD_MANAGER#UPDATE_BUDGET_MICROS} has been spent, the slower items still
+ * due are deferred to the next tick. Every tick items are never deferred, and an item that has
+ * been deferred for a whole period runs regardless. Deferrals per item are shown on the tab.
+ */
 public class BDManager {
     static private BDManager _singleton;
     static private boolean _started = false;
 
-    private ArrayList<BDUpdatable> update_list;
+    private static class Entry {
+        final BDUpdatable item;
+        final UpdateRate rate;
+        final int phase;
+        final int profile_id;
+        // Tick it became due without running yet, -1 if it isn't waiting.
+        long due_since = -1;
+        long deferred = 0;
+
+        Entry(BDUpdatable item, UpdateRate rate, int phase) {
+            this.item = item;
+            this.rate = rate;
+            this.phase = phase;
+            this.profile_id = LoopProfiler.register(item.getID() + ".update");
+        }
+    }
+
+    // Sorted fastest tier first, registration order within a tier.
+    private ArrayList<Entry> update_list;
+    // How many items of each tier are on each phase, to pick the emptiest one for the next.
+    private int[][] phase_load;
+    private long tick = 0;
     private ShuffleboardTab tab;
     private ShuffleboardLayout status_layout;
+    private ShuffleboardLayout deferred_layout;
 
     public static BDManager getInstance() {
         if (_singleton != null) {
@@ -33,22 +65,63 @@ public class BDManager {
         if (!_started) {
             _singleton = new BDManager();
             _started = true;
+            // Every status on the tab is published through it.
+            TelemetryPublisher.initialize();
         }
     }
 
     private BDManager() {
-        update_list = new ArrayList<BDUpdatable>();
+        update_list = new ArrayList<Entry>();
+        phase_load = new int[UpdateRate.values().length][];
+        for (UpdateRate rate : UpdateRate.values()) {
+            phase_load[rate.ordinal()] = new int[rate.getPeriodTicks()];
+        }
         tab = Shuffleboard.getTab("BDManager");
         status_layout = tab.getLayout("BD Device Statuses", BuiltInLayouts.kGrid);
         status_layout.withSize(4, 4)
         .withPosition(0, 0);
+        deferred_layout = tab.getLayout("BD Deferred Updates", BuiltInLayouts.kList)
+        .withSize(2, 4);
     }
 
     public void register(BDUpdatable item) {
         if (isInstantiated()) {
-            update_list.add(item);
-            status_layout.addString(item.getID(), () -> item.getStatus());
+            UpdateRate rate = item.getUpdateRate();
+            int[] load = phase_load[rate.ordinal()];
+            int phase = 0;
+            for (int i = 1; i < load.length; i++) {
+                if (load[i] < load[phase]) {
+                    phase = i;
+                }
+            }
+            load[phase]++;
+
+            Entry entry = new Entry(item, rate, phase);
+            int index = 0;
+            while (index < update_list.size() && update_list.get(index).rate.ordinal() <= rate.ordinal()) {
+                index++;
+            }
+            update_list.add(index, entry);
+
+            TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+            telemetry.addString(status_layout.add(item.getID(), "").getEntry(), UpdateRate.ONE_HZ, item::getStatus);
+            if (rate != UpdateRate.EVERY_TICK) {
+                telemetry.addDouble(deferred_layout.add(item.getID(), 0.0).getEntry(), UpdateRate.ONE_HZ, () -> entry.deferred);
+            }
+        }
+    }
+
+    /**
+     * @param item a registered item
+     * @return how many ticks its update was pushed back because the budget ran out, 0 if it isn't registered
+     */
+    public long getDeferredCount(BDUpdatable item) {
+        for (Entry entry : update_list) {
+            if (entry.item == item) {
+                return entry.deferred;
+            }
         }
+        return 0;
     }
 
     public ShuffleboardTab getInstanceManagerialTab() {
@@ -61,8 +134,28 @@ public class BDManager {
     }
 
     public void update() {
-        for (BDUpdatable item: update_list) {
-            item.update();
+        long start = RobotController.getFPGATime();
+        for (int i = 0; i < update_list.size(); i++) {
+            Entry entry = update_list.get(i);
+            int period = entry.rate.getPeriodTicks();
+            if (entry.due_since < 0 && tick % period == entry.phase) {
+                entry.due_since = tick;
+            }
+            if (entry.due_since < 0) {
+                continue;
+            }
+
+            boolean over_budget = RobotController.getFPGATime() - start > BD_MANAGER.UPDATE_BUDGET_MICROS;
+            if (period > 1 && over_budget && tick - entry.due_since < period) {
+                entry.deferred++;
+                continue;
+            }
+
+            long profile_start = LoopProfiler.start();
+            entry.item.update();
+            LoopProfiler.stop(entry.profile_id, profile_start);
+            entry.due_since = -1;
         }
+        tick++;
     }
 }
\ No newline at end of file
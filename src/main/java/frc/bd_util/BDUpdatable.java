@@ -6,4 +6,11 @@ public interface BDUpdatable {
     public abstract String getID();
 
     public abstract String getStatus();
+
+    /**
+     * @return how often {@link BDManager} should call {@link #update()}
+     */
+    public default UpdateRate getUpdateRate() {
+        return UpdateRate.EVERY_TICK;
+    }
 }
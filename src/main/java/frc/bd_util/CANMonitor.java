@@ -0,0 +1,184 @@
+package frc.bd_util;
+
+import java.util.ArrayList;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.can.CANStatus;
+import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import frc.bd_util.BDConstants.CAN_MONITOR;
+import frc.bd_util.custom_talon.TalonFXW;
+
+/**
+ * Watches the roboRIO CAN bus.<p>
+ * Samples {@link RobotController#getCANStatus()} at {@link UpdateRate#TEN_HZ} and
+ * keeps a rolling history of utilization. Devices added with {@link #addDevice} or {@link #addTalon}
+ * get an estimated frame rate from their status frame profiles, so there's a per-device breakdown
+ * of where the bandwidth goes. Everything shows up on the BDManager tab. A warning goes to the driver station once utilization has stayed above
+ * {@link CAN_MONITOR#ALERT_THRESHOLD} for {@link CAN_MONITOR#ALERT_HOLD} seconds.
+ */
+public class CANMonitor implements BDUpdatable {
+    private static class Device {
+        final String name;
+        final DoubleSupplier frame_rate;
+        double frames_per_second = 0.0;
+
+        Device(String name, DoubleSupplier frame_rate) {
+            this.name = name;
+            this.frame_rate = frame_rate;
+        }
+
+        void sample() {
+            frames_per_second = frame_rate.getAsDouble();
+        }
+    }
+
+    private final ArrayList<Device> devices = new ArrayList<Device>();
+    private final ShuffleboardLayout device_layout;
+
+    private final double[] history = new double[CAN_MONITOR.HISTORY_SIZE];
+    private final double[] history_out = new double[CAN_MONITOR.HISTORY_SIZE];
+    private int history_head = 0;
+    private int history_size = 0;
+
+    private double utilization = 0.0;
+    private double peak_utilization = 0.0;
+    private double estimated_frames = 0.0;
+    private int tx_errors = 0;
+    private int rx_errors = 0;
+    private int tx_full = 0;
+    private int bus_off = 0;
+
+    private double above_since = Double.NaN;
+    private boolean alerting = false;
+
+    public CANMonitor() {
+        ShuffleboardTab tab = BDManager.getInstance().getInstanceManagerialTab();
+
+        ShuffleboardLayout bus_layout = tab.getLayout("CAN Bus", BuiltInLayouts.kList)
+        .withSize(2, 4);
+        bus_layout.addDouble("Utilization %", () -> utilization * 100);
+        bus_layout.addDouble("Peak %", () -> peak_utilization * 100);
+        bus_layout.addDouble("Estimated %", () -> getEstimatedUtilization() * 100);
+        bus_layout.addDoubleArray("History %", this::getHistory);
+        bus_layout.addDouble("TX Errors", () -> tx_errors);
+        bus_layout.addDouble("RX Errors", () -> rx_errors);
+        bus_layout.addDouble("TX Full", () -> tx_full);
+        bus_layout.addDouble("Bus Off", () -> bus_off);
+        bus_layout.addBoolean("High Load", () -> alerting);
+
+        device_layout = tab.getLayout("CAN Devices (frames per sec)", BuiltInLayouts.kList)
+        .withSize(2, 4);
+
+        BDManager.getInstance().register(this);
+    }
+
+    /**
+     * Adds a device to the per-device breakdown.
+     * @param name name shown on the dashboard
+     * @param frame_rate estimated frames per second the device sends, usually from its status profile
+     */
+    public void addDevice(String name, DoubleSupplier frame_rate) {
+        add(new Device(name, frame_rate));
+    }
+
+    /**
+     * Adds a Talon to the per-device breakdown. Its estimate is its status frame profile, which
+     * already counts the control frame. That goes out every control period whether or not the
+     * output changed, so the outputs it sends aren't added on top.
+     * @param name name shown on the dashboard
+     * @param motor the motor
+     */
+    public void addTalon(String name, TalonFXW motor) {
+        add(new Device(name, motor::getEstimatedFrameRate));
+    }
+
+    private void add(Device device) {
+        devices.add(device);
+        device_layout.addDouble(device.name, () -> device.frames_per_second);
+    }
+
+    public void update() {
+        double now = Timer.getFPGATimestamp();
+
+        CANStatus status = RobotController.getCANStatus();
+        utilization = status.percentBusUtilization;
+        peak_utilization = Math.max(peak_utilization, utilization);
+        tx_errors = status.transmitErrorCount;
+        rx_errors = status.receiveErrorCount;
+        tx_full = status.txFullCount;
+        if (status.busOffCount > bus_off) {
+            DriverStation.reportWarning("CAN bus went bus-off (" + status.busOffCount + " times since boot)", false);
+        }
+        bus_off = status.busOffCount;
+
+        history[(history_head + history_size) % history.length] = utilization;
+        if (history_size < history.length) {
+            history_size++;
+        } else {
+            history_head = (history_head + 1) % history.length;
+        }
+
+        estimated_frames = 0.0;
+        for (Device device : devices) {
+            device.sample();
+            estimated_frames += device.frames_per_second;
+        }
+
+        // Only alert on sustained load, a single busy sample during config is normal.
+        if (utilization > CAN_MONITOR.ALERT_THRESHOLD) {
+            if (Double.isNaN(above_since)) {
+                above_since = now;
+            }
+            if (!alerting && now - above_since >= CAN_MONITOR.ALERT_HOLD) {
+                alerting = true;
+                DriverStation.reportWarning(String.format("CAN utilization above %.0f%% for %.1fs (now %.0f%%)",
+                    CAN_MONITOR.ALERT_THRESHOLD * 100, now - above_since, utilization * 100), false);
+            }
+        } else {
+            above_since = Double.NaN;
+            alerting = false;
+        }
+    }
+
+    /**
+     * @return The last sampled bus utilization, from 0 to 1.
+     */
+    public double getUtilization() {
+        return utilization;
+    }
+
+    /**
+     * @return Bus utilization predicted from the registered devices, from 0 to 1. Devices that
+     * weren't registered don't count, so this is a lower bound.
+     */
+    public double getEstimatedUtilization() {
+        return estimated_frames * CAN_MONITOR.BITS_PER_FRAME / CAN_MONITOR.BITRATE;
+    }
+
+    /**
+     * @return Sampled utilization in percent, oldest first. The array is reused.
+     */
+    public double[] getHistory() {
+        for (int i = 0; i < history_out.length; i++) {
+            history_out[i] = i < history_size ? history[(history_head + i) % history.length] * 100 : 0.0;
+        }
+        return history_out;
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.TEN_HZ;
+    }
+
+    public String getID() {
+        return "CANMonitor";
+    }
+
+    public String getStatus() {
+        return (alerting ? "HIGH LOAD " : "OK ") + String.format("%.0f%%", utilization * 100);
+    }
+}
@@ -0,0 +1,238 @@
+package frc.bd_util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import com.ctre.phoenix.ErrorCode;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
+
+/**
+ * Remembers what configuration every CTRE device was last given, so boots after the first can
+ * skip factory defaulting and rewriting devices that already have it.<p>
+ * Reading a whole configuration back costs about as much CAN time as writing it, so the device
+ * isn't read back. Instead every configure writes a random stamp into the device's custom
+ * parameter {@link #STAMP_PARAM}, and {@link #CACHE_PATH} remembers the stamp along with a hash of
+ * the desired configuration's {@code toString()}. A device is skipped only when both still match,
+ * which takes one parameter read. A changed config in code, a swapped device or a factory reset all
+ * cause a full reconfigure. A single setting changed by hand in Tuner doesn't, clear the cache for that.<p>
+ * Fingerprints are only written to disk by {@link #save()}, once every device has been configured.
+ */
+public class DeviceConfigCache implements BDUpdatable {
+    public static final String CACHE_PATH = "/home/lvuser/config_fingerprints.json";
+    // Custom parameter slot the stamp lives in. Factory default sets it back to 0.
+    public static final int STAMP_PARAM = 0;
+
+    private static DeviceConfigCache _singleton;
+
+    private final JSONObject fingerprints;
+    // Written from device init threads, widgets are only added from update() on the main thread.
+    private final Map<String, String> results = new ConcurrentHashMap<String, String>();
+    private final Set<String> shown = new HashSet<String>();
+    private final ShuffleboardLayout layout;
+    private final Random random = new Random();
+    private boolean dirty = false;
+    private int configured = 0;
+    private int skipped = 0;
+
+    public static DeviceConfigCache getInstance() {
+        if (_singleton != null) {
+            return _singleton;
+        } else {
+            DriverStation.reportError("DeviceConfigCache is not initialized", false);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the cache. Call once on the main thread, after {@link BDManager#initialize()} and
+     * before any device is configured.
+     */
+    public static void initialize() {
+        if (_singleton == null) {
+            _singleton = new DeviceConfigCache();
+        }
+    }
+
+    private DeviceConfigCache() {
+        fingerprints = load();
+        layout = BDManager.getInstance().getInstanceManagerialTab()
+        .getLayout("Device Config", BuiltInLayouts.kList)
+        .withSize(2, 4);
+
+        BDManager.getInstance().register(this);
+    }
+
+    /**
+     * Configures a device unless it already has the desired configuration.
+     * @param device unique name for the device, e.g. "Talon 4"
+     * @param desired the configuration object from {@code CTREConfigs}
+     * @param read_stamp reads custom parameter {@link #STAMP_PARAM} from the device
+     * @param write_stamp writes custom parameter {@link #STAMP_PARAM} to the device
+     * @param apply factory defaults and writes the configuration, only run on a mismatch. Returns
+     * the first error, or {@link ErrorCode#OK} if every call succeeded.
+     * @return true if the device was skipped
+     * @throws IllegalStateException if the configuration didn't apply. Nothing is stamped or recorded
+     * then, so the next boot tries again.
+     */
+    public boolean configure(String device, Object desired, IntSupplier read_stamp, IntFunction<ErrorCode> write_stamp, Supplier<ErrorCode> apply) {
+        long start = RobotController.getFPGATime();
+        String desired_hash = hash(desired.toString());
+        int stamp = read_stamp.getAsInt();
+
+        boolean skip;
+        synchronized (this) {
+            Object entry = fingerprints.get(device);
+            skip = stamp != 0
+                && entry instanceof JSONObject
+                && desired_hash.equals(((JSONObject) entry).get("desired"))
+                && ((JSONObject) entry).get("stamp") instanceof Number
+                && ((Number) ((JSONObject) entry).get("stamp")).intValue() == stamp;
+        }
+
+        if (!skip) {
+            // Phoenix reports failures through error codes, not exceptions. A device that only took
+            // part of its config must not be stamped, or every later boot would skip it.
+            ErrorCode error = apply.get();
+            if (error != ErrorCode.OK) {
+                results.put(device, "FAILED " + error);
+                throw new IllegalStateException(device + " config failed: " + error);
+            }
+            // If DeviceInitializer gave up on us mid config, the caller has already written this device off.
+            DeviceInitializer.checkCancelled();
+            int new_stamp = newStamp();
+            error = write_stamp.apply(new_stamp);
+            if (error != ErrorCode.OK) {
+                // Configured, but the old stamp may still be on the device, so don't remember this one.
+                DriverStation.reportWarning(device + " config stamp not written: " + error, false);
+            } else {
+                record(device, desired_hash, new_stamp);
+            }
+        }
+
+        double ms = (RobotController.getFPGATime() - start) / 1000.0;
+        String result = String.format("%s %.1f ms", skip ? "skipped" : "configured", ms);
+        results.put(device, result);
+        synchronized (this) {
+            if (skip) {
+                skipped++;
+            } else {
+                configured++;
+            }
+        }
+        return skip;
+    }
+
+    /**
+     * Forgets every fingerprint, so the next boot configures everything from scratch.
+     */
+    public synchronized void clear() {
+        fingerprints.clear();
+        dirty = true;
+        save();
+    }
+
+    /**
+     * Writes the fingerprints to disk if anything was configured since the last save. Call once on
+     * the main thread after {@link DeviceInitializer#join()}, not per device.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        try (FileWriter writer = new FileWriter(CACHE_PATH)) {
+            writer.write(fingerprints.toJSONString());
+            dirty = false;
+        } catch (IOException e) {
+            // Not fatal, next boot just configures everything again.
+            DriverStation.reportWarning("Could not write config fingerprint cache: " + e.getMessage(), false);
+        }
+    }
+
+    private synchronized int newStamp() {
+        int stamp = 0;
+        while (stamp == 0) {
+            stamp = random.nextInt();
+        }
+        return stamp;
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized void record(String device, String desired_hash, int stamp) {
+        JSONObject entry = new JSONObject();
+        entry.put("desired", desired_hash);
+        entry.put("stamp", stamp);
+        fingerprints.put(device, entry);
+        dirty = true;
+    }
+
+    private JSONObject load() {
+        File file = new File(CACHE_PATH);
+        if (!file.isFile()) {
+            return new JSONObject();
+        }
+        try (FileReader reader = new FileReader(file)) {
+            return (JSONObject) new JSONParser().parse(reader);
+        } catch (IOException | ParseException | ClassCastException e) {
+            DriverStation.reportWarning("Config fingerprint cache unreadable, configuring every device: " + e.getMessage(), false);
+            return new JSONObject();
+        }
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM has SHA-256, but fall back to something rather than crash at boot.
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+
+    public void update() {
+        if (shown.size() == results.size()) {
+            return;
+        }
+        for (String device : results.keySet()) {
+            if (shown.add(device)) {
+                layout.addString(device, () -> results.get(device));
+            }
+        }
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.ONE_HZ;
+    }
+
+    public String getID() {
+        return "DeviceConfigCache";
+    }
+
+    public synchronized String getStatus() {
+        return skipped + " skipped, " + configured + " configured";
+    }
+}
@@ -0,0 +1,215 @@
+package frc.bd_util;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
+
+/**
+ * Boot time device configuration stage.<p>
+ * Independent device configurations (one CANCoder + steering motor pair, one drive motor, the gyro)
+ * are handed to {@link #submit(String, Runnable)} and run at the same time on a small thread pool,
+ * instead of one after another in the constructors. {@link #join()} waits for all of them, each
+ * with its own timeout, prints a timeline of when each device started and how long it took, and
+ * reports an error to the driver station for every device that failed or timed out. A device that
+ * timed out is cancelled, and whoever called join() is expected to keep its devices out of use.<p>
+ * Cancelling only stops a task that hasn't started. Phoenix calls ignore interrupts, so a running
+ * task keeps going until it reaches a {@link #checkCancelled()}, which tasks call between config
+ * calls. A config call that throws or that {@link DeviceConfigCache} rejects fails the device.<p>
+ * Submitted tasks must only touch their own devices. Shuffleboard and BDManager aren't thread
+ * safe, so anything that registers widgets stays in the constructor on the main thread.
+ */
+public class DeviceInitializer implements BDUpdatable {
+    private static final int THREADS = 4;
+    private static final double DEFAULT_TIMEOUT = 2.0;
+
+    private static DeviceInitializer _singleton;
+
+    private static class Task {
+        final String device;
+        final double timeout;
+        volatile long started = 0;
+        volatile long finished = 0;
+        volatile Throwable error = null;
+        Future<?> future;
+
+        Task(String device, double timeout) {
+            this.device = device;
+            this.timeout = timeout;
+        }
+    }
+
+    private final AtomicInteger thread_count = new AtomicInteger(0);
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "DeviceInit-" + thread_count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ArrayList<Task> tasks = new ArrayList<Task>();
+    private final long stage_start = RobotController.getFPGATime();
+    private int joined = 0;
+    private int failed = 0;
+
+    public static DeviceInitializer getInstance() {
+        if (_singleton == null) {
+            _singleton = new DeviceInitializer();
+        }
+        return _singleton;
+    }
+
+    private DeviceInitializer() {
+        BDManager.getInstance().register(this);
+    }
+
+    /**
+     * Queues a device configuration with the default timeout.
+     * @param device name used in the timeline and error messages
+     * @param configure the configuration calls, run on a pool thread
+     */
+    public void submit(String device, Runnable configure) {
+        submit(device, configure, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Queues a device configuration.
+     * @param device name used in the timeline and error messages
+     * @param configure the configuration calls, run on a pool thread
+     * @param timeout how long {@link #join()} waits for this device once it starts, in seconds
+     */
+    public void submit(String device, Runnable configure, double timeout) {
+        Task task = new Task(device, timeout);
+        task.future = executor.submit(() -> {
+            task.started = RobotController.getFPGATime();
+            try {
+                configure.run();
+            } catch (Throwable t) {
+                task.error = t;
+            }
+            task.finished = RobotController.getFPGATime();
+        });
+        tasks.add(task);
+    }
+
+    /**
+     * Call between config calls in a submitted task, so one that {@link #join()} gave up on stops at
+     * the next call instead of finishing behind the caller's back.
+     * @throws CancellationException if this task was cancelled
+     */
+    public static void checkCancelled() {
+        if (Thread.interrupted()) {
+            throw new CancellationException("cancelled after timing out");
+        }
+    }
+
+    /**
+     * Waits for everything submitted so far. Must be called on the main thread, and before anything
+     * uses the devices. Every device that failed or timed out gets its own driver station error. One
+     * that timed out is cancelled: it never starts if it was still queued, otherwise it stops at its
+     * next {@link #checkCancelled()}. The call it's stuck in still runs to its own timeout.
+     * @return true if every device configured. On false the caller must not drive those devices.
+     */
+    public boolean join() {
+        ShuffleboardLayout layout = null;
+        boolean ok = true;
+
+        for (int i = joined; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            String result;
+            boolean success = false;
+            try {
+                await(task);
+                if (task.error != null) {
+                    result = "FAILED " + task.error;
+                } else {
+                    result = String.format("+%.0f ms, took %.0f ms", (task.started - stage_start) / 1000.0, (task.finished - task.started) / 1000.0);
+                    success = true;
+                }
+            } catch (TimeoutException e) {
+                // Keeps it from ever starting if it's still queued. A running one sees the interrupt at its next checkCancelled().
+                task.future.cancel(true);
+                result = String.format(task.started == 0 ? "TIMED OUT waiting %.1f s to start" : "TIMED OUT after %.1f s", task.timeout);
+            } catch (Exception e) {
+                result = "FAILED " + e;
+            }
+
+            if (!success) {
+                ok = false;
+                failed++;
+                DriverStation.reportError("Device " + task.device + " did not configure: " + result, false);
+            }
+            System.out.println("[DeviceInit] " + task.device + ": " + result);
+
+            if (layout == null) {
+                layout = BDManager.getInstance().getInstanceManagerialTab()
+                .getLayout("Startup Timeline", BuiltInLayouts.kList)
+                .withSize(2, 4);
+            }
+            String shown = result;
+            layout.addString(task.device, () -> shown);
+        }
+        joined = tasks.size();
+
+        System.out.println(String.format("[DeviceInit] %d devices in %.0f ms", joined, (RobotController.getFPGATime() - stage_start) / 1000.0));
+        return ok;
+    }
+
+    /**
+     * Waits for one task. The timeout runs from when the task started, so time spent queued behind
+     * other devices doesn't count against it. A task that never gets a thread, because every pool
+     * thread is stuck, gives up one timeout after we started waiting on it.
+     */
+    private void await(Task task) throws Exception {
+        long timeout = (long) (task.timeout * 1e6);
+        long waiting_since = RobotController.getFPGATime();
+        while (true) {
+            long started = task.started;
+            long deadline = (started != 0 ? started : waiting_since) + timeout;
+            long remaining = deadline - RobotController.getFPGATime();
+            if (remaining <= 0 && !task.future.isDone() && (started != 0 || task.started == 0)) {
+                throw new TimeoutException();
+            }
+            try {
+                task.future.get(Math.max(1, remaining), TimeUnit.MICROSECONDS);
+                return;
+            } catch (TimeoutException e) {
+                // Check again, it may have started since.
+            }
+        }
+    }
+
+    /**
+     * @return true once every submitted device has been joined
+     */
+    public boolean isComplete() {
+        return joined == tasks.size();
+    }
+
+    public void update() {
+
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.ONE_HZ;
+    }
+
+    public String getID() {
+        return "DeviceInitializer";
+    }
+
+    public String getStatus() {
+        if (!isComplete()) {
+            return "configuring " + (tasks.size() - joined) + " devices";
+        }
+        return failed > 0 ? failed + " DEVICES FAILED" : "OK, " + joined + " devices";
+    }
+}
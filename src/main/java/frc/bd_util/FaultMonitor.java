@@ -0,0 +1,197 @@
+package frc.bd_util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * One device's faults as a bitmask, refreshed by the device's own update() through
+ * {@link #set(int)}.<p>
+ * Nothing is built while the faults stay the same. When they change, the status string is rebuilt
+ * once, written to the "Faults/[device]" NetworkTable, a line is added to the transition history
+ * and every {@link Listener} is told. Faults are also latched into a sticky mask with the time each
+ * one was first and last seen, until {@link #clearSticky()}.
+ */
+public class FaultMonitor {
+    /**
+     * Called on the main thread whenever a device's fault set changes.
+     */
+    public interface Listener {
+        /**
+         * @param monitor the device's monitor
+         * @param previous faults before, as a bitmask
+         * @param current faults now, as a bitmask
+         */
+        public abstract void faultsChanged(FaultMonitor monitor, int previous, int current);
+    }
+
+    // Transitions kept in the history, oldest dropped first.
+    private static final int HISTORY_SIZE = 16;
+
+    private static final ArrayList<Listener> listeners = new ArrayList<Listener>();
+    private static final NetworkTable table = NetworkTableInstance.getDefault().getTable("Faults");
+
+    private final String device;
+    private final String[] names;
+    private final NetworkTableEntry active_entry;
+    private final NetworkTableEntry sticky_entry;
+    private final NetworkTableEntry history_entry;
+
+    private int active = 0;
+    private int sticky = 0;
+    private final double[] first_seen;
+    private final double[] last_seen;
+    private String status = "OK";
+
+    private final String[] history = new String[HISTORY_SIZE];
+    private int history_count = 0;
+
+    /**
+     * @param device name shown on the dashboard and NetworkTables
+     * @param names name of each fault bit, lowest bit first
+     */
+    public FaultMonitor(String device, String[] names) {
+        this.device = device;
+        this.names = names;
+        this.first_seen = new double[names.length];
+        this.last_seen = new double[names.length];
+
+        NetworkTable device_table = table.getSubTable(device);
+        active_entry = device_table.getEntry("active");
+        sticky_entry = device_table.getEntry("sticky");
+        history_entry = device_table.getEntry("history");
+        active_entry.setString(status);
+        sticky_entry.setString("none");
+        history_entry.setStringArray(new String[0]);
+    }
+
+    /**
+     * Adds a listener for every device's fault changes.
+     * @param listener the listener
+     */
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Updates the faults. Does nothing past a comparison unless they changed. Main thread only.
+     * @param faults the device's current faults as a bitmask
+     */
+    public void set(int faults) {
+        if (faults == active) {
+            if (faults != 0) {
+                markSeen(faults);
+            }
+            return;
+        }
+
+        int previous = active;
+        active = faults;
+        sticky |= faults;
+        markSeen(faults);
+
+        status = faults == 0 ? "OK" : describe(faults);
+        active_entry.setString(status);
+        sticky_entry.setString(sticky == 0 ? "none" : describe(sticky));
+        addHistory(String.format("%.2fs: %s", Timer.getFPGATimestamp(), status));
+
+        int raised = faults & ~previous;
+        if (raised != 0) {
+            DriverStation.reportWarning(device + " fault: " + describe(raised), false);
+        }
+        for (Listener listener : listeners) {
+            listener.faultsChanged(this, previous, faults);
+        }
+    }
+
+    private void markSeen(int faults) {
+        double now = Timer.getFPGATimestamp();
+        for (int bit = 0; bit < names.length; bit++) {
+            if ((faults & (1 << bit)) != 0) {
+                if (first_seen[bit] == 0.0) {
+                    first_seen[bit] = now;
+                }
+                last_seen[bit] = now;
+            }
+        }
+    }
+
+    private void addHistory(String line) {
+        if (history_count == HISTORY_SIZE) {
+            System.arraycopy(history, 1, history, 0, HISTORY_SIZE - 1);
+            history_count--;
+        }
+        history[history_count++] = line;
+        String[] out = new String[history_count];
+        System.arraycopy(history, 0, out, 0, history_count);
+        history_entry.setStringArray(out);
+    }
+
+    /**
+     * @param faults a bitmask
+     * @return the names of the set bits, comma separated
+     */
+    public String describe(int faults) {
+        StringBuilder builder = new StringBuilder();
+        for (int bit = 0; bit < names.length; bit++) {
+            if ((faults & (1 << bit)) != 0) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(names[bit]);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Forgets every latched fault and its timestamps, except the ones still active.
+     */
+    public void clearSticky() {
+        sticky = active;
+        Arrays.fill(first_seen, 0.0);
+        Arrays.fill(last_seen, 0.0);
+        markSeen(active);
+        sticky_entry.setString(sticky == 0 ? "none" : describe(sticky));
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getSticky() {
+        return sticky;
+    }
+
+    /**
+     * @param bit the fault bit
+     * @return FPGA time the fault was first seen since the last {@link #clearSticky()}, 0 if never
+     */
+    public double getFirstSeen(int bit) {
+        return first_seen[bit];
+    }
+
+    /**
+     * @param bit the fault bit
+     * @return FPGA time the fault was last seen active, 0 if never
+     */
+    public double getLastSeen(int bit) {
+        return last_seen[bit];
+    }
+
+    /**
+     * @return the active faults, only rebuilt when they change
+     */
+    public String getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,242 @@
+package frc.bd_util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.bd_util.BDConstants.LOOP_PROFILER;
+
+/**
+ * Times what the robot loop spends its 20 ms on, with the FPGA microsecond clock.<p>
+ * Every timed item (a subsystem's periodic(), a command's execute(), a BDUpdatable's update(), the
+ * scheduler as a whole) gets a fixed bucket histogram kept in primitive arrays, so recording a
+ * sample never allocates. Every {@link LOOP_PROFILER#PUBLISH_PERIOD} seconds each item's
+ * {p50, p95, p99, max, samples} (milliseconds) is written to the "LoopProfiler" NetworkTable, over
+ * the last {@link LOOP_PROFILER#WINDOW} seconds.<p>
+ * Items time themselves with {@link #start()} and {@link #stop(int, long)}. Commands are timed
+ * through the scheduler's execute callback: since that fires after execute(), a command's time is
+ * measured from the previous command's callback, so it also includes the previous command's
+ * isFinished() and end(). The first command is measured from after the button bindings.<p>
+ * Switched with "LoopProfiler/enabled". While off, {@link #start()} and {@link #stop(int, long)}
+ * are a single boolean check. Main thread only.
+ */
+public class LoopProfiler implements BDUpdatable {
+    static private LoopProfiler _singleton;
+    static private boolean enabled = LOOP_PROFILER.ENABLED;
+
+    // Per item, indexed by id. counts is flattened, item id's histogram starts at id * BUCKETS.
+    static private String[] names = new String[16];
+    static private int[] counts = new int[16 * LOOP_PROFILER.BUCKETS];
+    static private int[] samples = new int[16];
+    static private long[] max_micros = new long[16];
+    static private int item_count = 0;
+
+    static private long loop_start = 0;
+    static private long command_mark = 0;
+
+    public static final int LOOP = register("Robot.loop");
+    public static final int SCHEDULER = register("CommandScheduler.run");
+    public static final int SUBSYSTEMS = register("Subsystems + buttons");
+    public static final int BDMANAGER = register("BDManager.update");
+
+    private final HashMap<String, Integer> command_ids = new HashMap<String, Integer>();
+    private final NetworkTable table;
+    private final NetworkTableEntry enabled_entry;
+    private NetworkTableEntry[] entries = new NetworkTableEntry[0];
+    private double[][] summaries = new double[0][];
+
+    private double last_publish = 0.0;
+    private double window_start = 0.0;
+    private String worst = "nothing yet";
+
+    /**
+     * Starts publishing and hooks into the command scheduler. Call after the button bindings are
+     * made, so the command timing starts after them.
+     */
+    public static void initialize() {
+        if (_singleton == null) {
+            _singleton = new LoopProfiler();
+        }
+    }
+
+    private LoopProfiler() {
+        table = NetworkTableInstance.getDefault().getTable("LoopProfiler");
+        enabled_entry = table.getEntry("enabled");
+        enabled_entry.setBoolean(enabled);
+
+        CommandScheduler scheduler = CommandScheduler.getInstance();
+        // Bound after the other bindings, so it runs once subsystems and buttons are done.
+        scheduler.getDefaultButtonLoop().bind(() -> {
+            if (enabled && loop_start != 0) {
+                command_mark = RobotController.getFPGATime();
+                record(SUBSYSTEMS, command_mark - loop_start);
+            }
+        });
+        scheduler.onCommandExecute(this::commandExecuted);
+
+        BDManager.getInstance().register(this);
+    }
+
+    /**
+     * Adds an item to time. Not for the hot path, call once and keep the id.
+     * @param name name it's published under
+     * @return the id to pass to {@link #stop(int, long)}
+     */
+    public static int register(String name) {
+        if (item_count == names.length) {
+            int capacity = names.length * 2;
+            names = Arrays.copyOf(names, capacity);
+            counts = Arrays.copyOf(counts, capacity * LOOP_PROFILER.BUCKETS);
+            samples = Arrays.copyOf(samples, capacity);
+            max_micros = Arrays.copyOf(max_micros, capacity);
+        }
+        names[item_count] = name;
+        return item_count++;
+    }
+
+    /**
+     * @return the current FPGA time in microseconds, or 0 while the profiler is off
+     */
+    public static long start() {
+        return enabled ? RobotController.getFPGATime() : 0;
+    }
+
+    /**
+     * Records how long an item took since {@link #start()}.
+     * @param id from {@link #register(String)}
+     * @param start what {@link #start()} returned
+     */
+    public static void stop(int id, long start) {
+        // start is 0 if the profiler was switched on partway through.
+        if (enabled && start != 0) {
+            record(id, RobotController.getFPGATime() - start);
+        }
+    }
+
+    /**
+     * Marks the start of a robot loop, for {@link #LOOP}, {@link #SCHEDULER} and the command timing.
+     * @return what {@link #start()} returns
+     */
+    public static long beginLoop() {
+        loop_start = start();
+        return loop_start;
+    }
+
+    private static void record(int id, long micros) {
+        int bucket = (int) Math.min(micros / LOOP_PROFILER.BUCKET_MICROS, LOOP_PROFILER.BUCKETS - 1);
+        counts[id * LOOP_PROFILER.BUCKETS + Math.max(bucket, 0)]++;
+        samples[id]++;
+        if (micros > max_micros[id]) {
+            max_micros[id] = micros;
+        }
+    }
+
+    private void commandExecuted(Command command) {
+        if (!enabled) {
+            return;
+        }
+        Integer id = command_ids.get(command.getName());
+        if (id == null) {
+            id = register("Command " + command.getName());
+            command_ids.put(command.getName(), id);
+        }
+        long now = RobotController.getFPGATime();
+        record(id, now - command_mark);
+        command_mark = now;
+    }
+
+    /**
+     * Upper edge of the bucket the given fraction of samples falls in, in milliseconds. Never more
+     * than the max, which also covers the last bucket having no upper edge.
+     */
+    private static double percentile(int id, double fraction) {
+        int target = (int) Math.ceil(samples[id] * fraction);
+        int seen = 0;
+        int base = id * LOOP_PROFILER.BUCKETS;
+        for (int i = 0; i < LOOP_PROFILER.BUCKETS; i++) {
+            seen += counts[base + i];
+            if (seen >= target) {
+                return Math.min((i + 1) * LOOP_PROFILER.BUCKET_MICROS, max_micros[id]) / 1000.0;
+            }
+        }
+        return max_micros[id] / 1000.0;
+    }
+
+    private void publish() {
+        if (entries.length < item_count) {
+            int old = entries.length;
+            entries = Arrays.copyOf(entries, item_count);
+            summaries = Arrays.copyOf(summaries, item_count);
+            for (int i = old; i < item_count; i++) {
+                entries[i] = table.getEntry(names[i]);
+                summaries[i] = new double[5];
+            }
+        }
+
+        double worst_p99 = -1;
+        for (int id = 0; id < item_count; id++) {
+            if (samples[id] == 0) {
+                continue;
+            }
+            double[] summary = summaries[id];
+            summary[0] = percentile(id, 0.50);
+            summary[1] = percentile(id, 0.95);
+            summary[2] = percentile(id, 0.99);
+            summary[3] = max_micros[id] / 1000.0;
+            summary[4] = samples[id];
+            entries[id].setDoubleArray(summary);
+
+            // The loop and scheduler totals would always win, only look at individual items.
+            if (id > BDMANAGER && summary[2] > worst_p99) {
+                worst_p99 = summary[2];
+                worst = String.format("%s p99 %.2f ms", names[id], summary[2]);
+            }
+        }
+    }
+
+    private static void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(samples, 0);
+        Arrays.fill(max_micros, 0);
+    }
+
+    public void update() {
+        boolean requested = enabled_entry.getBoolean(enabled);
+        if (requested != enabled) {
+            enabled = requested;
+            reset();
+            window_start = Timer.getFPGATimestamp();
+        }
+        if (!enabled) {
+            return;
+        }
+
+        double now = Timer.getFPGATimestamp();
+        if (now - last_publish >= LOOP_PROFILER.PUBLISH_PERIOD) {
+            last_publish = now;
+            publish();
+            if (now - window_start >= LOOP_PROFILER.WINDOW) {
+                window_start = now;
+                reset();
+            }
+        }
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.TEN_HZ;
+    }
+
+    public String getID() {
+        return "LoopProfiler";
+    }
+
+    public String getStatus() {
+        return enabled ? "on, slowest: " + worst : "off";
+    }
+}
@@ -0,0 +1,261 @@
+package frc.bd_util;
+
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import edu.wpi.first.networktables.GenericEntry;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.bd_util.BDConstants.TELEMETRY;
+
+/**
+ * Publishes dashboard values at the rate each one actually needs, and off the main thread.<p>
+ * Every channel has an {@link UpdateRate}, and channels of the slower tiers are spread over
+ * different ticks. On its tick a channel's value is read on the main thread and written as a
+ * fixed size record into a {@link TelemetryRing}. A low priority "TelemetryPublisher" thread drains
+ * the ring and does the NetworkTables writes, so that cost stays out of the robot loop. If the
+ * ring is full the record is dropped and counted, the loop never waits on it.<p>
+ * A channel writes into a {@link GenericEntry}, either a Shuffleboard widget's (so the widget keeps
+ * its type and properties) or one from {@link #entry(String)} under the "Telemetry" NetworkTable.
+ * Packed channels fill a caller-owned, preallocated array that's published as one entry, so
+ * nothing is allocated per sample.<p>
+ * While the FMS is attached every channel drops one tier, everything past {@link UpdateRate#ONE_HZ}
+ * stays there.
+ */
+public class TelemetryPublisher implements BDUpdatable {
+    private static TelemetryPublisher _singleton;
+
+    private static abstract class Channel {
+        final int id;
+        final UpdateRate rate;
+        final GenericEntry entry;
+        final int phase;
+
+        Channel(int id, UpdateRate rate, GenericEntry entry, int phase) {
+            this.id = id;
+            this.rate = rate;
+            this.entry = entry;
+            this.phase = phase;
+        }
+
+        // Main thread.
+        abstract void sample(TelemetryRing ring);
+
+        // Publisher thread.
+        abstract void publish(TelemetryRing.Record record);
+    }
+
+    private static class DoubleChannel extends Channel {
+        final DoubleSupplier value;
+
+        DoubleChannel(int id, UpdateRate rate, GenericEntry entry, int phase, DoubleSupplier value) {
+            super(id, rate, entry, phase);
+            this.value = value;
+        }
+
+        void sample(TelemetryRing ring) {
+            ring.offer(id, value.getAsDouble());
+        }
+
+        void publish(TelemetryRing.Record record) {
+            entry.setDouble(record.values[0]);
+        }
+    }
+
+    private static class PackedChannel extends Channel {
+        final double[] buffer;
+        final Runnable fill;
+        // Owned by the publisher thread, the entry needs an array of exactly the right length.
+        final double[] published;
+
+        PackedChannel(int id, UpdateRate rate, GenericEntry entry, int phase, double[] buffer, Runnable fill) {
+            super(id, rate, entry, phase);
+            this.buffer = buffer;
+            this.fill = fill;
+            this.published = new double[buffer.length];
+        }
+
+        void sample(TelemetryRing ring) {
+            fill.run();
+            ring.offer(id, buffer, buffer.length);
+        }
+
+        void publish(TelemetryRing.Record record) {
+            System.arraycopy(record.values, 0, published, 0, published.length);
+            entry.setDoubleArray(published);
+        }
+    }
+
+    private static class StringChannel extends Channel {
+        final Supplier<String> value;
+
+        StringChannel(int id, UpdateRate rate, GenericEntry entry, int phase, Supplier<String> value) {
+            super(id, rate, entry, phase);
+            this.value = value;
+        }
+
+        void sample(TelemetryRing ring) {
+            ring.offer(id, value.get());
+        }
+
+        void publish(TelemetryRing.Record record) {
+            entry.setString(record.text == null ? "" : record.text);
+        }
+    }
+
+    private final NetworkTable table = NetworkTableInstance.getDefault().getTable("Telemetry");
+    private final TelemetryRing ring = new TelemetryRing(TELEMETRY.RING_CAPACITY);
+    // Copied on every add, so the publisher thread can look channels up without locking.
+    private volatile Channel[] channels = new Channel[0];
+    // How many channels each tier has, to spread the next one onto the following tick.
+    private final int[] tier_counts = new int[UpdateRate.values().length];
+    private long tick = 0;
+    private boolean fms_attached = false;
+    private volatile long published = 0;
+
+    public static TelemetryPublisher getInstance() {
+        if (_singleton != null) {
+            return _singleton;
+        } else {
+            DriverStation.reportError("TelemetryPublisher is not initialized", false);
+            return null;
+        }
+    }
+
+    /**
+     * Called by {@link BDManager#initialize()}.
+     */
+    public static void initialize() {
+        if (_singleton == null) {
+            _singleton = new TelemetryPublisher();
+            BDManager.getInstance().register(_singleton);
+        }
+    }
+
+    private TelemetryPublisher() {
+        Thread thread = new Thread(this::drain, "TelemetryPublisher");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * @param name entry name under the "Telemetry" table, '/' makes subtables
+     * @return an entry to publish a channel to
+     */
+    public GenericEntry entry(String name) {
+        return table.getTopic(name).getGenericEntry();
+    }
+
+    /**
+     * Publishes a number.
+     * @param entry where to write it
+     * @param rate how often
+     * @param value read on the main thread once per publish
+     */
+    public void addDouble(GenericEntry entry, UpdateRate rate, DoubleSupplier value) {
+        add(new DoubleChannel(channels.length, rate, entry, nextPhase(rate), value));
+    }
+
+    /**
+     * Publishes a packed array. The buffer is reused for every publish.
+     * @param entry where to write it
+     * @param rate how often
+     * @param buffer the array to publish, owned by the caller, at most {@link TelemetryRing#WIDTH} long
+     * @param fill writes the current values into the buffer, on the main thread
+     */
+    public void addDoubleArray(GenericEntry entry, UpdateRate rate, double[] buffer, Runnable fill) {
+        if (buffer.length > TelemetryRing.WIDTH) {
+            throw new IllegalArgumentException("Packed telemetry is limited to " + TelemetryRing.WIDTH + " values, got " + buffer.length);
+        }
+        add(new PackedChannel(channels.length, rate, entry, nextPhase(rate), buffer, fill));
+    }
+
+    /**
+     * Publishes a string. Meant for statuses, the supplier should hand back a string it already has.
+     * @param entry where to write it
+     * @param rate how often
+     * @param value read on the main thread once per publish
+     */
+    public void addString(GenericEntry entry, UpdateRate rate, Supplier<String> value) {
+        add(new StringChannel(channels.length, rate, entry, nextPhase(rate), value));
+    }
+
+    private int nextPhase(UpdateRate rate) {
+        return tier_counts[rate.ordinal()]++;
+    }
+
+    private void add(Channel channel) {
+        Channel[] grown = Arrays.copyOf(channels, channels.length + 1);
+        grown[channel.id] = channel;
+        channels = grown;
+    }
+
+    /**
+     * @param rate a channel's own rate
+     * @return the rate it publishes at right now
+     */
+    private UpdateRate effectiveRate(UpdateRate rate) {
+        if (!fms_attached) {
+            return rate;
+        }
+        UpdateRate[] rates = UpdateRate.values();
+        return rates[Math.min(rate.ordinal() + 1, rates.length - 1)];
+    }
+
+    /**
+     * Publisher thread. Drains the ring into NetworkTables, then sleeps a little.
+     */
+    private void drain() {
+        TelemetryRing.Record record = new TelemetryRing.Record();
+        while (!Thread.currentThread().isInterrupted()) {
+            Channel[] current = channels;
+            long count = 0;
+            while (ring.poll(record)) {
+                if (record.channel >= current.length) {
+                    // Added after this pass started.
+                    current = channels;
+                }
+                current[record.channel].publish(record);
+                count++;
+            }
+            published += count;
+
+            try {
+                Thread.sleep(TELEMETRY.DRAIN_PERIOD_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return records dropped because the publisher thread fell behind
+     */
+    public long getOverflows() {
+        return ring.getOverflows();
+    }
+
+    public void update() {
+        fms_attached = DriverStation.isFMSAttached();
+        Channel[] current = channels;
+        for (int i = 0; i < current.length; i++) {
+            Channel channel = current[i];
+            int period = effectiveRate(channel.rate).getPeriodTicks();
+            if ((tick + channel.phase) % period == 0) {
+                channel.sample(ring);
+            }
+        }
+        tick++;
+    }
+
+    public String getID() {
+        return "TelemetryPublisher";
+    }
+
+    public String getStatus() {
+        return channels.length + " channels, " + published + " published, " + ring.getOverflows() + " dropped" + (fms_attached ? ", FMS rates" : "");
+    }
+}
@@ -0,0 +1,148 @@
+package frc.bd_util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed size, lock-free ring of telemetry records with exactly one producer thread and one
+ * consumer thread.<p>
+ * A record is a channel id plus either up to {@link #WIDTH} doubles or one String. Every slot is
+ * preallocated, so offering a record never allocates. When the ring is full the record is dropped
+ * and counted, the producer never waits.
+ */
+public class TelemetryRing {
+    /**
+     * Doubles a single record can hold.
+     */
+    public static final int WIDTH = 16;
+
+    /**
+     * A consumer-owned copy of one record, filled by {@link TelemetryRing#poll(Record)}.
+     */
+    public static class Record {
+        public int channel;
+        public int length;
+        public final double[] values = new double[WIDTH];
+        public String text;
+    }
+
+    private final int mask;
+    private final int[] channels;
+    private final int[] lengths;
+    private final double[] values;
+    private final String[] texts;
+
+    // head is only written by the producer, tail only by the consumer. Slots between them are full.
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long overflows = 0;
+
+    /**
+     * @param capacity records the ring holds, rounded up to a power of two
+     */
+    public TelemetryRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.channels = new int[size];
+        this.lengths = new int[size];
+        this.values = new double[size * WIDTH];
+        this.texts = new String[size];
+    }
+
+    private int claim() {
+        long h = head.get();
+        if (h - tail.get() > mask) {
+            overflows++;
+            return -1;
+        }
+        return (int) (h & mask);
+    }
+
+    private void publish() {
+        // Ordered store, the consumer sees the slot's contents before it sees the new head.
+        head.lazySet(head.get() + 1);
+    }
+
+    /**
+     * Producer only.
+     * @return false if the ring was full and the record was dropped
+     */
+    public boolean offer(int channel, double value) {
+        int slot = claim();
+        if (slot < 0) {
+            return false;
+        }
+        channels[slot] = channel;
+        lengths[slot] = 1;
+        values[slot * WIDTH] = value;
+        texts[slot] = null;
+        publish();
+        return true;
+    }
+
+    /**
+     * Producer only. Copies the first length values, at most {@link #WIDTH}.
+     * @return false if the ring was full and the record was dropped
+     */
+    public boolean offer(int channel, double[] source, int length) {
+        int slot = claim();
+        if (slot < 0) {
+            return false;
+        }
+        channels[slot] = channel;
+        lengths[slot] = Math.min(length, WIDTH);
+        System.arraycopy(source, 0, values, slot * WIDTH, lengths[slot]);
+        texts[slot] = null;
+        publish();
+        return true;
+    }
+
+    /**
+     * Producer only.
+     * @return false if the ring was full and the record was dropped
+     */
+    public boolean offer(int channel, String text) {
+        int slot = claim();
+        if (slot < 0) {
+            return false;
+        }
+        channels[slot] = channel;
+        lengths[slot] = 0;
+        texts[slot] = text;
+        publish();
+        return true;
+    }
+
+    /**
+     * Consumer only. Takes the oldest record.
+     * @param out where to copy it
+     * @return false if the ring was empty
+     */
+    public boolean poll(Record out) {
+        long t = tail.get();
+        if (t == head.get()) {
+            return false;
+        }
+        int slot = (int) (t & mask);
+        out.channel = channels[slot];
+        out.length = lengths[slot];
+        System.arraycopy(values, slot * WIDTH, out.values, 0, out.length);
+        out.text = texts[slot];
+        texts[slot] = null;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * @return records dropped because the ring was full
+     */
+    public long getOverflows() {
+        return overflows;
+    }
+
+    /**
+     * @return records waiting to be consumed, approximate while either side is running
+     */
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+}
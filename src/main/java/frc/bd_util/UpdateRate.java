@@ -0,0 +1,25 @@
+package frc.bd_util;
+
+/**
+ * How often {@link BDManager} calls a {@link BDUpdatable}'s update(), in 20 ms robot loops.
+ * Faster tiers are also higher priority, they're updated first and never deferred.
+ */
+public enum UpdateRate {
+    EVERY_TICK(1),
+    TEN_HZ(5),
+    ONE_HZ(50);
+
+    private final int period_ticks;
+
+    private UpdateRate(int period_ticks) {
+        this.period_ticks = period_ticks;
+    }
+
+    public int getPeriodTicks() {
+        return period_ticks;
+    }
+
+    public double getPeriodSeconds() {
+        return period_ticks * 0.02;
+    }
+}
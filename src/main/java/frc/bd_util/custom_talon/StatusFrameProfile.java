@@ -0,0 +1,89 @@
+package frc.bd_util.custom_talon;
+/**
+* Named status frame period profiles for use within the <code>TalonFXW</code> class.
+* Every frame a Talon broadcasts costs CAN bandwidth, so each role only gets the frames it
+* actually uses at a useful rate. All periods are in milliseconds, 255 is the slowest a Talon allows.
+* @author David Muchow
+* @version 1.0a
+*/
+
+public enum StatusFrameProfile {
+
+    /**
+    * Drive motors. Position and velocity fast for odometry, current often enough for telemetry.
+    */
+    DRIVE(10, 10, 250, 50, 10),
+
+    /**
+    * Steering motors. Position fast for odometry and the angle loop, everything else slow.
+    */
+    STEER(20, 10, 250, 100, 10),
+
+    /**
+    * Anything that isn't being actively controlled, or any motor while the robot is disabled.
+    */
+    IDLE_MECHANISM(100, 100, 255, 255, 50);
+
+    // Frames we don't read (quadrature, pulse width, targets, PIDF, aux feedback) get this. PIDF is
+    // the exception while a PID tuner is attached, see TalonFXW.setPIDFrameNeeded.
+    public static final int UNUSED_PERIOD = 255;
+    public static final int UNUSED_FRAME_COUNT = 6;
+
+    private int general;
+    private int feedback;
+    private int temperature;
+    private int current;
+    private int control;
+
+    private StatusFrameProfile(int general, int feedback, int temperature, int current, int control) {
+        this.general = general;
+        this.feedback = feedback;
+        this.temperature = temperature;
+        this.current = current;
+        this.control = control;
+    }
+
+    /**
+     * @return Status 1 (applied output, faults, limit switches) period.
+    */
+    public int getGeneralPeriod() {
+        return general;
+    }
+
+    /**
+     * @return Status 2 (selected sensor position and velocity) period.
+    */
+    public int getFeedbackPeriod() {
+        return feedback;
+    }
+
+    /**
+     * @return Status 4 (temperature, bus voltage) period.
+    */
+    public int getTemperaturePeriod() {
+        return temperature;
+    }
+
+    /**
+     * @return Brushless current (supply and stator) period.
+    */
+    public int getCurrentPeriod() {
+        return current;
+    }
+
+    /**
+     * @return How often the control frame is sent to the motor.
+    */
+    public int getControlPeriod() {
+        return control;
+    }
+
+    /**
+     * @return Roughly how many CAN frames per second one motor on this profile puts on the bus,
+     * status frames plus the periodic control frame.
+    */
+    public double getFramesPerSecond() {
+        return 1000.0 / general + 1000.0 / feedback + 1000.0 / temperature + 1000.0 / current
+            + UNUSED_FRAME_COUNT * 1000.0 / UNUSED_PERIOD + 1000.0 / control;
+    }
+}
@@ -0,0 +1,243 @@
+package frc.bd_util.custom_talon;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.motorcontrol.can.BaseTalon;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.bd_util.DeviceConfigCache;
+
+/**
+* Background config writer for one Talon.<p>
+* Config calls block until the Talon answers or the timeout runs out, so they don't belong on the
+* main loop or a NetworkTables listener. {@link #set(Param, double)} only records the value and
+* returns. A shared background thread applies it later, and if the same parameter is set again
+* before then only the newest value is written. Values the Talon already has are skipped, and
+* failed writes are retried a few times before the future fails.<p>
+* These writes persist on the Talon, so before writing anything the {@link DeviceConfigCache} stamp
+* is cleared. The next boot then sees the Talon no longer has the config from code and rewrites it.
+* @author David Muchow
+* @version 1.0.0
+*/
+
+public class TalonConfigWriter {
+    /**
+    * Parameters the writer can apply. Gains are for PID slot 0.
+    */
+    public enum Param {
+        KP,
+        KI,
+        KD,
+        KF,
+        OPEN_LOOP_RAMP,
+        CLOSED_LOOP_RAMP
+    }
+
+    private static final Param[] PARAMS = Param.values();
+    private static final int TIMEOUT_MS = 30;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 50;
+
+    // One thread for every writer. The CAN bus serializes config traffic anyway.
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TalonConfigWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BaseTalon talon;
+
+    // Guarded by this. NaN in applied means we don't know what the Talon has.
+    private final double[] desired = new double[PARAMS.length];
+    private final double[] applied = new double[PARAMS.length];
+    private final boolean[] dirty = new boolean[PARAMS.length];
+    private final int[] attempts = new int[PARAMS.length];
+    @SuppressWarnings("unchecked")
+    private final CompletableFuture<Void>[] futures = new CompletableFuture[PARAMS.length];
+    private boolean scheduled = false;
+
+    private long writes = 0;
+    private long coalesced = 0;
+    private long skipped = 0;
+    private long failures = 0;
+
+    /**
+     * @param talon the Talon to write to
+    */
+    public TalonConfigWriter(BaseTalon talon) {
+        this.talon = talon;
+        for (int i = 0; i < PARAMS.length; i++) {
+            applied[i] = Double.NaN;
+        }
+    }
+
+    /**
+     * Queues a parameter write and returns right away. Safe to call from any thread.
+     * @param param the parameter
+     * @param value the new value
+     * @return completes once this value (or a newer one for the same parameter) is on the Talon,
+     * or fails if it couldn't be written
+    */
+    public synchronized CompletableFuture<Void> set(Param param, double value) {
+        int i = param.ordinal();
+        desired[i] = value;
+        attempts[i] = 0;
+        if (dirty[i]) {
+            // Still waiting to be written, the new value just replaces the old one.
+            coalesced++;
+        } else {
+            dirty[i] = true;
+            futures[i] = new CompletableFuture<Void>();
+        }
+        CompletableFuture<Void> future = futures[i];
+        schedule(0);
+        return future;
+    }
+
+    /**
+     * Tells the writer the Talon already has a value, e.g. after {@code configAllSettings}, so
+     * setting it again is skipped.
+     * @param param the parameter
+     * @param value the value the Talon has
+    */
+    public synchronized void markApplied(Param param, double value) {
+        applied[param.ordinal()] = value;
+    }
+
+    /**
+     * Forgets every applied value, so the next write of each parameter always goes out. Use after
+     * a factory default or a Talon reboot.
+    */
+    public synchronized void invalidate() {
+        for (int i = 0; i < PARAMS.length; i++) {
+            applied[i] = Double.NaN;
+        }
+    }
+
+    private void schedule(long delay_ms) {
+        if (!scheduled) {
+            scheduled = true;
+            executor.schedule(this::drain, delay_ms, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Runs on the writer thread. Writes everything dirty, one parameter at a time, without holding
+     * the lock during the CAN call so callers never wait on it.
+    */
+    private void drain() {
+        synchronized (this) {
+            // Anything set from here on needs another pass.
+            scheduled = false;
+        }
+
+        boolean retry = false;
+        boolean stamp_cleared = false;
+        for (int i = 0; i < PARAMS.length; i++) {
+            double value;
+            synchronized (this) {
+                if (!dirty[i]) {
+                    continue;
+                }
+                value = desired[i];
+                if (value == applied[i]) {
+                    dirty[i] = false;
+                    skipped++;
+                    futures[i].complete(null);
+                    continue;
+                }
+            }
+
+            ErrorCode error = ErrorCode.OK;
+            if (!stamp_cleared) {
+                error = talon.configSetCustomParam(0, DeviceConfigCache.STAMP_PARAM, TIMEOUT_MS);
+                stamp_cleared = error == ErrorCode.OK;
+            }
+            if (error == ErrorCode.OK) {
+                error = write(PARAMS[i], value);
+            }
+
+            synchronized (this) {
+                if (desired[i] != value) {
+                    // Changed while we were writing, leave it dirty for the next pass.
+                    if (error == ErrorCode.OK) {
+                        applied[i] = value;
+                    }
+                    retry = true;
+                    continue;
+                }
+
+                if (error == ErrorCode.OK) {
+                    applied[i] = value;
+                    dirty[i] = false;
+                    writes++;
+                    futures[i].complete(null);
+                } else if (++attempts[i] < MAX_ATTEMPTS) {
+                    retry = true;
+                } else {
+                    dirty[i] = false;
+                    failures++;
+                    DriverStation.reportWarning("Talon " + talon.getDeviceID() + " " + PARAMS[i] + " config failed: " + error, false);
+                    futures[i].completeExceptionally(new IllegalStateException(PARAMS[i] + " failed with " + error));
+                }
+            }
+        }
+
+        if (retry) {
+            synchronized (this) {
+                schedule(RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    private ErrorCode write(Param param, double value) {
+        switch (param) {
+            case KP:
+                return talon.config_kP(0, value, TIMEOUT_MS);
+            case KI:
+                return talon.config_kI(0, value, TIMEOUT_MS);
+            case KD:
+                return talon.config_kD(0, value, TIMEOUT_MS);
+            case KF:
+                return talon.config_kF(0, value, TIMEOUT_MS);
+            case OPEN_LOOP_RAMP:
+                return talon.configOpenloopRamp(value, TIMEOUT_MS);
+            case CLOSED_LOOP_RAMP:
+                return talon.configClosedloopRamp(value, TIMEOUT_MS);
+            default:
+                return ErrorCode.OK;
+        }
+    }
+
+    /**
+     * @return How many values have been written to the Talon.
+    */
+    public synchronized long getWriteCount() {
+        return writes;
+    }
+
+    /**
+     * @return How many values were replaced by a newer one before they were written.
+    */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /**
+     * @return How many writes were skipped because the Talon already had the value.
+    */
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * @return How many writes gave up after retrying.
+    */
+    public synchronized long getFailureCount() {
+        return failures;
+    }
+}
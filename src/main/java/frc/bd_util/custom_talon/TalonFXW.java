@@ -1,9 +1,15 @@
 package frc.bd_util.custom_talon;
 
+import java.util.Arrays;
+
+import com.ctre.phoenix.motorcontrol.ControlFrame;
+import com.ctre.phoenix.motorcontrol.ControlMode;
+import com.ctre.phoenix.motorcontrol.DemandType;
 import com.ctre.phoenix.motorcontrol.Faults;
+import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
 import com.ctre.phoenix.motorcontrol.can.WPI_TalonFX;
 
-import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.RobotController;
 import frc.bd_util.*;
 
 /**
@@ -18,6 +24,68 @@ public class TalonFXW extends WPI_TalonFX implements BDUpdatable {
     private TalonFXWConfig configuration;
     private int id;
 
+    // Signal cache. Every getter reads through here, so dashboards and control code calling the
+    // same getter in one loop only cost one JNI read. Ages are measured against the loop stamp from
+    // stampLoop(), not the clock, so a cached read is just an array lookup. Main thread only.
+    private static final TalonSignal[] SIGNALS = TalonSignal.values();
+    private static long loop_micros = 0;
+    private final double[] signal_values = new double[SIGNALS.length];
+    private final long[] signal_timestamps = new long[SIGNALS.length];
+    // Half a loop, so the first read of every loop goes to the motor however much the loop start jitters.
+    private long signal_period_micros = 10000;
+
+    // Output gate. Remembers the last thing sent so repeats can be skipped. Demands are in different
+    // units per mode, so each mode has its own epsilon, indexed by ordinal.
+    private static final ControlMode[] MODES = ControlMode.values();
+    private ControlMode last_mode = null;
+    private DemandType last_demand_type = DemandType.Neutral;
+    private double last_demand = 0.0;
+    private double last_feedforward = 0.0;
+    private long last_output_micros = 0;
+    private final double[] output_epsilons = defaultEpsilons();
+    private double feedforward_epsilon = 1e-3;
+    private long output_keepalive_micros = 100000;
+    private long sent_outputs = 0;
+    private long suppressed_outputs = 0;
+
+    private StatusFrameProfile status_profile = null;
+    private volatile boolean pid_frame_needed = false;
+    private final Faults faults = new Faults();
+    private final FaultMonitor fault_monitor;
+    private TalonConfigWriter config_writer = null;
+
+    // Bit order of Faults.toBitfield().
+    private static final String[] FAULT_NAMES = {
+        "UnderVoltage",
+        "ForwardLimitSwitch",
+        "ReverseLimitSwitch",
+        "ForwardSoftLimit",
+        "ReverseSoftLimit",
+        "HardwareFailure",
+        "ResetDuringEn",
+        "SensorOverflow",
+        "SensorOutOfPhase",
+        "HardwareESDReset",
+        "RemoteLossOfSignal",
+        "APIError",
+        "SupplyOverV",
+        "SupplyUnstable"
+    };
+
+    // Ballpark for a Talon FX left on factory periods, status frames plus the control frame.
+    private static final double FACTORY_FRAMES_PER_SECOND = 300.0;
+
+    // Frames nothing in our code reads. They always run at the slowest period. Status_13 (closed loop
+    // error and derivative) is read by PIDTunerTalon, so it only drops to the slowest period while no
+    // tuner is attached, see setPIDFrameNeeded.
+    private static final StatusFrameEnhanced[] UNUSED_FRAMES = {
+        StatusFrameEnhanced.Status_3_Quadrature,
+        StatusFrameEnhanced.Status_8_PulseWidth,
+        StatusFrameEnhanced.Status_10_Targets,
+        StatusFrameEnhanced.Status_12_Feedback1,
+        StatusFrameEnhanced.Status_14_Turn_PIDF1
+    };
+
     /**
      * For Talon controllers on the roboRIO CAN bus.
      * @param can_id device id of the Talon controller
@@ -27,6 +95,7 @@ public class TalonFXW extends WPI_TalonFX implements BDUpdatable {
         super(can_id);
         this.configuration = configuration;
         this.id = can_id;
+        this.fault_monitor = new FaultMonitor(getID(), FAULT_NAMES);
 
         BDManager.getInstance().register(this);
     }
@@ -41,6 +110,7 @@ public class TalonFXW extends WPI_TalonFX implements BDUpdatable {
         super(can_id, can_bus);
         this.configuration = configuration;
         this.id = can_id;
+        this.fault_monitor = new FaultMonitor(getID(), FAULT_NAMES);
 
         BDManager.getInstance().register(this);
     }
@@ -56,6 +126,7 @@ public class TalonFXW extends WPI_TalonFX implements BDUpdatable {
         this.sensor_units = sensor_units;
         this.configuration = configuration;
         this.id = can_id;
+        this.fault_monitor = new FaultMonitor(getID(), FAULT_NAMES);
         BDManager.getInstance().register(this);
     }
 
@@ -70,22 +141,310 @@ public class TalonFXW extends WPI_TalonFX implements BDUpdatable {
         super(can_id, can_bus);
         this.sensor_units = sensor_units;
         this.id = can_id;
+        this.fault_monitor = new FaultMonitor(getID(), FAULT_NAMES);
 
         BDManager.getInstance().register(this);
     }
 
+    /**
+     * Stamps the signal cache of every TalonFXW with the current loop's time. Call once at the start
+     * of every robot loop, on the main thread. Until the first call nothing is cached.
+     * @param fpga_micros FPGA time the loop started, in microseconds
+    */
+    public static void stampLoop(long fpga_micros) {
+        loop_micros = fpga_micros;
+    }
+
+    /**
+     * Sets how long a cached signal is good for before the next read goes to the motor again.
+     * Ages are counted in loop stamps, so anything under a loop period means once per loop.
+     * @param seconds cache period, 0 reads the motor every time
+    */
+    public void setSignalCachePeriod(double seconds) {
+        signal_period_micros = (long) (seconds * 1e6);
+    }
+
+    /**
+     * Reads every cached signal from the motor right now. Call this once at the start of a loop,
+     * then use {@link #peekSignal(TalonSignal)} or the normal getters for the rest of it.
+    */
+    public void refreshAll() {
+        refresh(SIGNALS);
+    }
+
+    /**
+     * Reads some of the cached signals from the motor right now. Same as {@link #refreshAll()}, but
+     * skips the JNI reads for signals this loop won't use.
+     * @param signals the signals to read, best kept in a constant array so this doesn't allocate
+    */
+    public void refresh(TalonSignal[] signals) {
+        for (TalonSignal signal : signals) {
+            signal_values[signal.ordinal()] = readSignal(signal);
+            signal_timestamps[signal.ordinal()] = loop_micros;
+        }
+    }
+
+    /**
+     * Gets a signal, reading it from the motor only if the cached value is older than the cache period.
+     * @param signal the {@link TalonSignal} to get
+     * @return the signal value, in the units listed on {@link TalonSignal}
+    */
+    public double getCachedSignal(TalonSignal signal) {
+        int i = signal.ordinal();
+        if (signal_timestamps[i] == 0 || loop_micros - signal_timestamps[i] >= signal_period_micros) {
+            signal_values[i] = readSignal(signal);
+            signal_timestamps[i] = loop_micros;
+        }
+        return signal_values[i];
+    }
+
+    /**
+     * Gets a signal's cached value without ever going to the motor. For hot paths that run right
+     * after {@link #refresh(TalonSignal[])} in the same loop.
+     * @param signal the {@link TalonSignal} to get
+     * @return the last read value, in the units listed on {@link TalonSignal}
+    */
+    public double peekSignal(TalonSignal signal) {
+        return signal_values[signal.ordinal()];
+    }
+
+    /**
+     * @param signal the {@link TalonSignal} to check
+     * @return How long ago the cached value was read from the motor, in seconds. Infinity if never.
+    */
+    public double getSignalAge(TalonSignal signal) {
+        long timestamp = signal_timestamps[signal.ordinal()];
+        if (timestamp == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return (RobotController.getFPGATime() - timestamp) / 1e6;
+    }
+
+    private double readSignal(TalonSignal signal) {
+        switch (signal) {
+            case POSITION:
+                return super.getSelectedSensorPosition();
+            case VELOCITY:
+                return super.getSelectedSensorVelocity();
+            case SUPPLY_CURRENT:
+                return super.getSupplyCurrent();
+            case STATOR_CURRENT:
+                return super.getStatorCurrent();
+            case TEMPERATURE:
+                return super.getTemperature();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return This motor's background {@link TalonConfigWriter}, created on first use.
+    */
+    public synchronized TalonConfigWriter getConfigWriter() {
+        if (config_writer == null) {
+            config_writer = new TalonConfigWriter(this);
+        }
+        return config_writer;
+    }
+
+    /**
+     * Applies the status frame profile from this motor's {@link TalonFXWConfig}, if it has one.
+     * @param timeout_ms how long to wait for each frame to be confirmed, 0 to not wait
+    */
+    public void applyConfiguredStatusProfile(int timeout_ms) {
+        if (configuration != null && configuration.getStatusProfile() != null) {
+            applyStatusProfile(configuration.getStatusProfile(), timeout_ms);
+        }
+    }
+
+    /**
+     * Sets every status frame period, and the control frame period, from a profile. Can be called
+     * at any time, for example to slow everything down while disabled.
+     * @param profile the {@link StatusFrameProfile} to use
+     * @param timeout_ms how long to wait for each frame to be confirmed, 0 to not wait
+    */
+    public void applyStatusProfile(StatusFrameProfile profile, int timeout_ms) {
+        super.setStatusFramePeriod(StatusFrameEnhanced.Status_1_General, profile.getGeneralPeriod(), timeout_ms);
+        super.setStatusFramePeriod(StatusFrameEnhanced.Status_2_Feedback0, profile.getFeedbackPeriod(), timeout_ms);
+        super.setStatusFramePeriod(StatusFrameEnhanced.Status_4_AinTempVbat, profile.getTemperaturePeriod(), timeout_ms);
+        super.setStatusFramePeriod(StatusFrameEnhanced.Status_Brushless_Current, profile.getCurrentPeriod(), timeout_ms);
+        for (StatusFrameEnhanced frame : UNUSED_FRAMES) {
+            super.setStatusFramePeriod(frame, StatusFrameProfile.UNUSED_PERIOD, timeout_ms);
+        }
+        super.setStatusFramePeriod(StatusFrameEnhanced.Status_13_Base_PIDF0, getPIDFramePeriod(profile), timeout_ms);
+        super.setControlFramePeriod(ControlFrame.Control_3_General, profile.getControlPeriod());
+
+        status_profile = profile;
+    }
+
+    /**
+     * Keeps the closed loop error frame (Status_13) at the feedback period, for things that read
+     * {@link #getClosedLoopError()} or {@link #getErrorDerivative()} every loop, like a PID tuner.
+     * Takes effect right away if a profile is already applied. Doesn't wait for confirmation.
+     * @param needed true to keep Status_13 fast, false to let it drop to the unused period
+    */
+    public void setPIDFrameNeeded(boolean needed) {
+        pid_frame_needed = needed;
+        StatusFrameProfile profile = status_profile;
+        if (profile != null) {
+            super.setStatusFramePeriod(StatusFrameEnhanced.Status_13_Base_PIDF0, getPIDFramePeriod(profile), 0);
+        }
+    }
+
+    private int getPIDFramePeriod(StatusFrameProfile profile) {
+        return pid_frame_needed ? profile.getFeedbackPeriod() : StatusFrameProfile.UNUSED_PERIOD;
+    }
+
+    /**
+     * @return The status frame profile currently applied, or null if still on factory periods.
+    */
+    public StatusFrameProfile getStatusProfile() {
+        return status_profile;
+    }
+
+    /**
+     * @return Roughly how many periodic CAN frames per second this motor and its control frame use.
+     * The control frame goes out every control period no matter how often the output changes.
+    */
+    public double getEstimatedFrameRate() {
+        StatusFrameProfile profile = status_profile;
+        if (profile == null) {
+            return FACTORY_FRAMES_PER_SECOND;
+        }
+        // The profile counts Status_13 as unused.
+        double pid_frame = pid_frame_needed ? 1000.0 / profile.getFeedbackPeriod() - 1000.0 / StatusFrameProfile.UNUSED_PERIOD : 0.0;
+        return profile.getFramesPerSecond() + pid_frame;
+    }
+
+    private static double[] defaultEpsilons() {
+        double[] epsilons = new double[MODES.length];
+        Arrays.fill(epsilons, 1e-3);
+        return epsilons;
+    }
+
+    /**
+     * Sets how much the demand has to change before {@link #setOutput} sends it in one mode. Every
+     * mode starts at 1e-3, which only makes sense for percent output.
+     * @param mode the control mode this applies to
+     * @param epsilon smallest change worth sending, in the units of that mode
+    */
+    public void setOutputEpsilon(ControlMode mode, double epsilon) {
+        output_epsilons[mode.ordinal()] = epsilon;
+    }
+
+    /**
+     * Sets how much the feedforward has to change before {@link #setOutput} sends it.
+     * @param epsilon smallest change worth sending, in the units of the demand type (percent output
+     * for {@code ArbitraryFeedForward})
+    */
+    public void setFeedforwardEpsilon(double epsilon) {
+        feedforward_epsilon = epsilon;
+    }
+
+    /**
+     * Sets how often {@link #setOutput} resends an unchanged output anyway, so the motor never
+     * goes too long without hearing from us.
+     * @param seconds keep-alive period
+    */
+    public void setOutputKeepAlive(double seconds) {
+        output_keepalive_micros = (long) (seconds * 1e6);
+    }
+
+    /**
+     * Change gated version of {@code set(ControlMode, double)}. Skips the call if nothing meaningful changed.
+     * @param mode the control mode
+     * @param demand the demand, in the units of the control mode
+    */
+    public void setOutput(ControlMode mode, double demand) {
+        setOutput(mode, demand, DemandType.Neutral, 0.0);
+    }
+
+    /**
+     * Change gated version of {@code set(ControlMode, double, DemandType, double)}. The output is
+     * only sent when the mode changes, the demand or feedforward moves more than the epsilon, or
+     * the keep-alive period has run out.
+     * @param mode the control mode
+     * @param demand the demand, in the units of the control mode
+     * @param demand_type how the second demand is used
+     * @param feedforward the second demand
+    */
+    public void setOutput(ControlMode mode, double demand, DemandType demand_type, double feedforward) {
+        long now = RobotController.getFPGATime();
+        boolean changed = mode != last_mode
+            || demand_type != last_demand_type
+            || Math.abs(demand - last_demand) > output_epsilons[mode.ordinal()]
+            || Math.abs(feedforward - last_feedforward) > feedforward_epsilon;
+
+        if (!changed && now - last_output_micros < output_keepalive_micros) {
+            suppressed_outputs++;
+            return;
+        }
+
+        if (demand_type == DemandType.Neutral) {
+            super.set(mode, demand);
+        } else {
+            super.set(mode, demand, demand_type, feedforward);
+        }
+
+        last_mode = mode;
+        last_demand_type = demand_type;
+        last_demand = demand;
+        last_feedforward = feedforward;
+        last_output_micros = now;
+        sent_outputs++;
+    }
+
+    /**
+     * @return How many times {@link #setOutput} called through to set(). That's JNI calls, not CAN
+     * frames: the control frame goes out every control period either way.
+    */
+    public long getSentOutputCount() {
+        return sent_outputs;
+    }
+
+    /**
+     * @return How many set() calls {@link #setOutput} skipped because nothing changed.
+    */
+    public long getSuppressedOutputCount() {
+        return suppressed_outputs;
+    }
+
+    /**
+     * @return Supply current in amps, from the signal cache.
+    */
+    @Override
+    public double getSupplyCurrent() {
+        return getCachedSignal(TalonSignal.SUPPLY_CURRENT);
+    }
+
+    /**
+     * @return Stator current in amps, from the signal cache.
+    */
+    @Override
+    public double getStatorCurrent() {
+        return getCachedSignal(TalonSignal.STATOR_CURRENT);
+    }
+
+    /**
+     * @return Temperature in celsius, from the signal cache.
+    */
+    @Override
+    public double getTemperature() {
+        return getCachedSignal(TalonSignal.TEMPERATURE);
+    }
+
     /**
      * @return How many rotations the shaft has made.
     */
     public double getShaftRotations() {
-        return super.getSelectedSensorPosition() / 2048;
+        return getCachedSignal(TalonSignal.POSITION) / 2048;
     }
     
     /**
      * @return How many full rotations the shaft makes every 100ms
     */
     public double getShaftVelocity() {
-        return super.getSelectedSensorVelocity() / 2048;
+        return getCachedSignal(TalonSignal.VELOCITY) / 2048;
     }
 
     /**
@@ -114,17 +473,7 @@ public class TalonFXW extends WPI_TalonFX implements BDUpdatable {
      * @return The total wheel rotations in selected unit.
      */
     public double getObjectTotalDistanceTraveled() {
-        if (sensor_units == SensorUnits.METRIC) {
-            double wheelRotations = (getShaftRotations() / configuration.getGearing());
-            return Units.feetToMeters(wheelRotations * configuration.getDiameter() * Math.PI);
-        }
-        if (sensor_units == SensorUnits.IMPERIAL) {
-            double wheelRotations = (getShaftRotations() / configuration.getGearing());
-            return wheelRotations * configuration.getDiameter() * Math.PI;
-        }
-
-        // returns how many rotations the object has made.
-        return getObjectTotalRotations();
+        return configuration.toDistance(getShaftRotations(), sensor_units);
     }
 
     /**
@@ -135,17 +484,7 @@ public class TalonFXW extends WPI_TalonFX implements BDUpdatable {
      * @return The wheel velocity in selected unit.
      */
     public double getObjectConvertedVelocity() {
-        if (sensor_units == SensorUnits.METRIC) {
-            double wheelVelocityInRotations = getObjectRotationsPerSecond();
-            return Units.feetToMeters(wheelVelocityInRotations * configuration.getDiameter() * Math.PI); 
-        }
-        if (sensor_units == SensorUnits.IMPERIAL) {
-            double wheelVelocityInRotations = getObjectRotationsPerSecond();
-            return wheelVelocityInRotations * configuration.getDiameter() * Math.PI; 
-        }
-
-        // returns how many rotations the object has made.
-        return getObjectRotationsPerSecond();
+        return configuration.toVelocity(getShaftVelocity(), sensor_units);
     }
 
     /**
@@ -162,8 +501,20 @@ public class TalonFXW extends WPI_TalonFX implements BDUpdatable {
         super.setSelectedSensorPosition(0, 0, 0);
     }
 
+    /**
+     * @return This motor's faults, refreshed on the BDManager schedule.
+    */
+    public FaultMonitor getFaultMonitor() {
+        return fault_monitor;
+    }
+
     public void update() {
-        
+        super.getFaults(faults);
+        fault_monitor.set(faults.toBitfield());
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.TEN_HZ;
     }
 
     public String getID() {
@@ -171,9 +522,6 @@ public class TalonFXW extends WPI_TalonFX implements BDUpdatable {
     }
 
     public String getStatus() {
-        Faults current_faults = new Faults();
-        super.getFaults(current_faults);
-
-        return current_faults.hasAnyFault() ? current_faults.toString() : "OK";
+        return fault_monitor.getStatus();
     }
 }
\ No newline at end of file
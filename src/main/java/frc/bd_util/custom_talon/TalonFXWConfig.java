@@ -1,5 +1,7 @@
 package frc.bd_util.custom_talon;
 
+import edu.wpi.first.math.util.Units;
+
 /**
  * Settings for a TalonFXW<p>
  * If you are working with a Falcon 500 that does not have an attached object, this wrapper is unusuable.
@@ -11,6 +13,7 @@ public class TalonFXWConfig {
     // Base Imperial
     private double gearing;
     private double diameter;
+    private StatusFrameProfile status_profile;
 
     /**
      * Settings for Talons directly attached to a wheel-like object. Gearing is assumed to be one.
@@ -44,5 +47,58 @@ public class TalonFXWConfig {
     public double getDiameter() {
         return diameter;
     }
+
+    /**
+     * Sets the status frame profile motors using this config get at configuration time.
+     * @param status_profile the {@link StatusFrameProfile} for this motor's role
+     * @return this config, for chaining
+    */
+    public TalonFXWConfig withStatusProfile(StatusFrameProfile status_profile) {
+        this.status_profile = status_profile;
+        return this;
+    }
+
+    /**
+     * @return The status frame profile for this motor's role, or null to leave the factory periods.
+    */
+    public StatusFrameProfile getStatusProfile() {
+        return status_profile;
+    }
+
+    /**
+     * Converts shaft rotations to how far the attached object has gone. Used by
+     * {@link TalonFXW#getObjectTotalDistanceTraveled()}, kept here so it doesn't need a motor.
+     * @param shaft_rotations total rotations of the motor shaft
+     * @param units the {@link SensorUnits} to convert to
+     * @return meters for METRIC, feet for IMPERIAL, object rotations for CTRE
+    */
+    public double toDistance(double shaft_rotations, SensorUnits units) {
+        double object_rotations = shaft_rotations / gearing;
+        if (units == SensorUnits.METRIC) {
+            return Units.feetToMeters(object_rotations * diameter * Math.PI);
+        }
+        if (units == SensorUnits.IMPERIAL) {
+            return object_rotations * diameter * Math.PI;
+        }
+        return object_rotations;
+    }
+
+    /**
+     * Converts shaft velocity to the attached object's velocity. Used by
+     * {@link TalonFXW#getObjectConvertedVelocity()}, kept here so it doesn't need a motor.
+     * @param shaft_velocity rotations of the motor shaft every 100ms
+     * @param units the {@link SensorUnits} to convert to
+     * @return meters per second for METRIC, feet per second for IMPERIAL, object rotations per second for CTRE
+    */
+    public double toVelocity(double shaft_velocity, SensorUnits units) {
+        double object_rps = (shaft_velocity * 10) / gearing;
+        if (units == SensorUnits.METRIC) {
+            return Units.feetToMeters(object_rps * diameter * Math.PI);
+        }
+        if (units == SensorUnits.IMPERIAL) {
+            return object_rps * diameter * Math.PI;
+        }
+        return object_rps;
+    }
     
 }
@@ -0,0 +1,35 @@
+package frc.bd_util.custom_talon;
+/**
+* Signals cached by the <code>TalonFXW</code> class.
+* Each one is read from the motor at most once per cache period, see {@link TalonFXW#setSignalCachePeriod(double)}.
+* @author David Muchow
+* @version 1.0a
+*/
+
+public enum TalonSignal {
+
+    /**
+    * Selected sensor position, in raw CTRE counts.
+    */
+    POSITION,
+
+    /**
+    * Selected sensor velocity, in raw CTRE counts per 100ms.
+    */
+    VELOCITY,
+
+    /**
+    * Supply current, in amps.
+    */
+    SUPPLY_CURRENT,
+
+    /**
+    * Stator current, in amps.
+    */
+    STATOR_CURRENT,
+
+    /**
+    * Motor temperature, in celsius.
+    */
+    TEMPERATURE
+}
@@ -0,0 +1,62 @@
+package frc.bd_util.logging;
+
+/**
+ * The .bdlog file layout, shared by {@link DataLogger} and anything reading logs back.<p>
+ * Big endian. A file is a schema header followed by blocks:
+ * <pre>
+ * header:
+ *   int    magic            'BDLG'
+ *   int    version          {@link #VERSION}
+ *   long   created          wall clock ms when logging started
+ *   int    channel count
+ *   per channel:
+ *     short  name length, then the UTF-8 name
+ *     byte   {@link Encoding} ordinal
+ *     double resolution     only used by {@link Encoding#DELTA}
+ *   int    record bytes     including the timestamp
+ *
+ * block:
+ *   int    magic            'BLK0'
+ *   int    record count
+ *   long   first timestamp  FPGA microseconds
+ *   long   last timestamp
+ *   long   per DELTA channel, its quantized value before the first record
+ *   records, each:
+ *     long   timestamp      FPGA microseconds
+ *     per channel, its value in that channel's encoding
+ * </pre>
+ * Every record in a file is the same width, so a block can be skipped or indexed into without
+ * reading it. A DELTA value is the change of round(value / resolution) since the previous record,
+ * clamped to a short. Anything moving faster than that catches up over the following records.
+ */
+public final class DataLogFormat {
+    public static final int MAGIC = 0x42444C47;
+    public static final int BLOCK_MAGIC = 0x424C4B30;
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".bdlog";
+
+    // magic, record count, first and last timestamp
+    public static final int BLOCK_HEADER_BYTES = 4 + 4 + 8 + 8;
+    public static final int TIMESTAMP_BYTES = 8;
+
+    private DataLogFormat() {}
+
+    public enum Encoding {
+        /** 8 byte double, for anything that needs full precision like positions. */
+        DOUBLE(8),
+        /** 4 byte float, for fast moving values where ~7 digits is plenty. */
+        FLOAT(4),
+        /** 2 byte delta of a quantized value, for slow moving values like temperatures. */
+        DELTA(2);
+
+        private final int bytes;
+
+        private Encoding(int bytes) {
+            this.bytes = bytes;
+        }
+
+        public int getBytes() {
+            return bytes;
+        }
+    }
+}
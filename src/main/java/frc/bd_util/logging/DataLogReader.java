@@ -0,0 +1,558 @@
+package frc.bd_util.logging;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import frc.bd_util.logging.DataLogFormat.Encoding;
+
+/**
+ * Reads .bdlog files written by {@link DataLogger}, without a robot or WPILib.<p>
+ * The file is memory mapped, so only the parts actually read are paged in. The first open scans
+ * every block once and builds an index that's cached next to the log ({@link #INDEX_SUFFIX}):
+ * the offset and time range of every block (the sparse time index), and every channel's min and
+ * max in every block (the channel index). After that, {@link #cursor(long, int[])} seeks straight
+ * to a timestamp and streams just the channels asked for, and {@link #findFirst} skips every
+ * block whose range can't match.<p>
+ * A block cut off by a power loss at the end of a file is ignored.
+ */
+public class DataLogReader implements Closeable {
+    public static final String INDEX_SUFFIX = ".idx";
+    private static final int INDEX_MAGIC = 0x42444958;
+    private static final int INDEX_VERSION = 1;
+    private static final Encoding[] ENCODINGS = Encoding.values();
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+
+    private long created;
+    private String[] names;
+    private Encoding[] encodings;
+    private double[] resolutions;
+    // Byte offset of each channel inside a record, and its place among the DELTA keyframes (-1 if not DELTA).
+    private int[] offsets;
+    private int[] delta_slots;
+    private int delta_count;
+    private int record_bytes;
+    private int data_start;
+
+    private int block_count;
+    private long[] block_offsets;
+    private int[] block_records;
+    private long[] block_first;
+    private long[] block_last;
+    // block * channel count + channel
+    private double[] block_min;
+    private double[] block_max;
+
+    /**
+     * Streams records from a starting time onwards. Reused arrays, nothing is allocated per record.
+     */
+    public class Cursor {
+        private final int[] channels;
+        private final double[] values;
+        private final long[] tracked;
+        private int block;
+        private int record;
+        private long timestamp;
+
+        private Cursor(int[] channels) {
+            this.channels = channels;
+            this.values = new double[channels.length];
+            this.tracked = new long[channels.length];
+        }
+
+        private void seek(long from_micros) {
+            block = firstBlockEndingAfter(from_micros);
+            if (block >= block_count) {
+                return;
+            }
+            startBlock();
+            // Binary search the fixed width records for the first one at or after from_micros.
+            int low = 0;
+            int high = block_records[block];
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (buffer.getLong(recordOffset(block, mid)) < from_micros) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            // DELTA channels have to be accumulated up to the seek point.
+            for (int r = 0; r < low; r++) {
+                accumulate(recordOffset(block, r));
+            }
+            record = low;
+        }
+
+        private void startBlock() {
+            record = 0;
+            long keyframes = block_offsets[block] + DataLogFormat.BLOCK_HEADER_BYTES;
+            for (int i = 0; i < channels.length; i++) {
+                int slot = delta_slots[channels[i]];
+                if (slot >= 0) {
+                    tracked[i] = buffer.getLong((int) (keyframes + slot * 8L));
+                }
+            }
+        }
+
+        private void accumulate(int offset) {
+            for (int i = 0; i < channels.length; i++) {
+                if (delta_slots[channels[i]] >= 0) {
+                    tracked[i] += buffer.getShort(offset + offsets[channels[i]]);
+                }
+            }
+        }
+
+        /**
+         * Moves to the next record.
+         * @return false once there are no more
+         */
+        public boolean next() {
+            while (block < block_count && record >= block_records[block]) {
+                block++;
+                if (block < block_count) {
+                    startBlock();
+                }
+            }
+            if (block >= block_count) {
+                return false;
+            }
+
+            int offset = recordOffset(block, record);
+            timestamp = buffer.getLong(offset);
+            accumulate(offset);
+            for (int i = 0; i < channels.length; i++) {
+                int channel = channels[i];
+                switch (encodings[channel]) {
+                    case DOUBLE:
+                        values[i] = buffer.getDouble(offset + offsets[channel]);
+                        break;
+                    case FLOAT:
+                        values[i] = buffer.getFloat(offset + offsets[channel]);
+                        break;
+                    case DELTA:
+                        values[i] = tracked[i] * resolutions[channel];
+                        break;
+                }
+            }
+            record++;
+            return true;
+        }
+
+        /**
+         * @return FPGA timestamp of the current record, in microseconds
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @param i position in the channel list the cursor was made with
+         * @return that channel's value in the current record
+         */
+        public double get(int i) {
+            return values[i];
+        }
+    }
+
+    /**
+     * Opens a log, loading its index or building and caching it if there isn't a valid one.
+     * @param file the .bdlog file
+     * @throws IOException if it can't be read or isn't a log
+     */
+    public DataLogReader(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "r");
+        if (raf.length() > Integer.MAX_VALUE) {
+            raf.close();
+            throw new IOException(file + " is too large to map");
+        }
+        this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+
+        try {
+            readHeader();
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        } catch (BufferUnderflowException e) {
+            raf.close();
+            throw new IOException(file + " ends inside its header");
+        }
+        File index = indexFile(file);
+        if (!loadIndex(index)) {
+            buildIndex();
+            try {
+                saveIndex(index);
+            } catch (IOException e) {
+                // Read-only location, the index just gets rebuilt next time.
+            }
+        }
+    }
+
+    /**
+     * @param log a .bdlog file
+     * @return where its cached index lives
+     */
+    public static File indexFile(File log) {
+        return new File(log.getPath() + INDEX_SUFFIX);
+    }
+
+    private void readHeader() throws IOException {
+        buffer.position(0);
+        if (buffer.getInt() != DataLogFormat.MAGIC) {
+            throw new IOException(file + " is not a bdlog");
+        }
+        int version = buffer.getInt();
+        if (version != DataLogFormat.VERSION) {
+            throw new IOException(file + " is version " + version + ", this reader handles " + DataLogFormat.VERSION);
+        }
+        created = buffer.getLong();
+        int count = buffer.getInt();
+
+        names = new String[count];
+        encodings = new Encoding[count];
+        resolutions = new double[count];
+        offsets = new int[count];
+        delta_slots = new int[count];
+        int offset = DataLogFormat.TIMESTAMP_BYTES;
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            int encoding = buffer.get();
+            if (encoding < 0 || encoding >= ENCODINGS.length) {
+                throw new IOException(file + " channel " + names[i] + " has unknown encoding " + encoding);
+            }
+            encodings[i] = ENCODINGS[encoding];
+            resolutions[i] = buffer.getDouble();
+            offsets[i] = offset;
+            offset += encodings[i].getBytes();
+            delta_slots[i] = encodings[i] == Encoding.DELTA ? delta_count++ : -1;
+        }
+        record_bytes = buffer.getInt();
+        if (record_bytes != offset) {
+            throw new IOException(file + " has a corrupt header");
+        }
+        data_start = buffer.position();
+    }
+
+    private int blockHeaderBytes() {
+        return DataLogFormat.BLOCK_HEADER_BYTES + delta_count * 8;
+    }
+
+    private int recordOffset(int block, int record) {
+        return (int) (block_offsets[block] + blockHeaderBytes() + (long) record * record_bytes);
+    }
+
+    private void buildIndex() {
+        int channel_count = names.length;
+        long[] offsets_found = new long[16];
+        int[] records_found = new int[16];
+        long[] first_found = new long[16];
+        long[] last_found = new long[16];
+        double[] min_found = new double[16 * channel_count];
+        double[] max_found = new double[16 * channel_count];
+
+        long position = data_start;
+        long size = buffer.capacity();
+        int count = 0;
+        while (position + blockHeaderBytes() <= size) {
+            int at = (int) position;
+            if (buffer.getInt(at) != DataLogFormat.BLOCK_MAGIC) {
+                break;
+            }
+            int records = buffer.getInt(at + 4);
+            long block_bytes = blockHeaderBytes() + (long) records * record_bytes;
+            if (records <= 0 || position + block_bytes > size) {
+                break;
+            }
+
+            if (count == offsets_found.length) {
+                int capacity = count * 2;
+                offsets_found = Arrays.copyOf(offsets_found, capacity);
+                records_found = Arrays.copyOf(records_found, capacity);
+                first_found = Arrays.copyOf(first_found, capacity);
+                last_found = Arrays.copyOf(last_found, capacity);
+                min_found = Arrays.copyOf(min_found, capacity * channel_count);
+                max_found = Arrays.copyOf(max_found, capacity * channel_count);
+            }
+            offsets_found[count] = position;
+            records_found[count] = records;
+            first_found[count] = buffer.getLong(at + 8);
+            last_found[count] = buffer.getLong(at + 16);
+            Arrays.fill(min_found, count * channel_count, (count + 1) * channel_count, Double.POSITIVE_INFINITY);
+            Arrays.fill(max_found, count * channel_count, (count + 1) * channel_count, Double.NEGATIVE_INFINITY);
+            count++;
+            position += block_bytes;
+        }
+
+        block_count = count;
+        block_offsets = offsets_found;
+        block_records = records_found;
+        block_first = first_found;
+        block_last = last_found;
+        block_min = min_found;
+        block_max = max_found;
+
+        // One pass over every value for the per-block channel ranges.
+        int[] all = new int[channel_count];
+        for (int i = 0; i < channel_count; i++) {
+            all[i] = i;
+        }
+        Cursor cursor = new Cursor(all);
+        for (int block = 0; block < block_count; block++) {
+            cursor.block = block;
+            cursor.startBlock();
+            int base = block * channel_count;
+            while (cursor.block == block && cursor.record < block_records[block] && cursor.next()) {
+                for (int i = 0; i < channel_count; i++) {
+                    double value = cursor.get(i);
+                    if (value < block_min[base + i]) {
+                        block_min[base + i] = value;
+                    }
+                    if (value > block_max[base + i]) {
+                        block_max[base + i] = value;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean loadIndex(File index) {
+        if (!index.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION
+                || in.readLong() != buffer.capacity() || in.readInt() != names.length) {
+                return false;
+            }
+            int count = in.readInt();
+            block_count = count;
+            block_offsets = new long[count];
+            block_records = new int[count];
+            block_first = new long[count];
+            block_last = new long[count];
+            block_min = new double[count * names.length];
+            block_max = new double[count * names.length];
+            for (int block = 0; block < count; block++) {
+                block_offsets[block] = in.readLong();
+                block_records[block] = in.readInt();
+                block_first[block] = in.readLong();
+                block_last[block] = in.readLong();
+                for (int i = 0; i < names.length; i++) {
+                    block_min[block * names.length + i] = in.readDouble();
+                    block_max[block * names.length + i] = in.readDouble();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void saveIndex(File index) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            // A log that was still growing when it was indexed doesn't match anymore.
+            out.writeLong(buffer.capacity());
+            out.writeInt(names.length);
+            out.writeInt(block_count);
+            for (int block = 0; block < block_count; block++) {
+                out.writeLong(block_offsets[block]);
+                out.writeInt(block_records[block]);
+                out.writeLong(block_first[block]);
+                out.writeLong(block_last[block]);
+                for (int i = 0; i < names.length; i++) {
+                    out.writeDouble(block_min[block * names.length + i]);
+                    out.writeDouble(block_max[block * names.length + i]);
+                }
+            }
+        }
+    }
+
+    private int firstBlockEndingAfter(long micros) {
+        int low = 0;
+        int high = block_count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (block_last[mid] < micros) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param from_micros FPGA time to start at, the first record at or after it is the first one returned
+     * @param channels channel indexes to read, from {@link #getChannel(String)}
+     * @return a cursor positioned just before that record
+     */
+    public Cursor cursor(long from_micros, int[] channels) {
+        Cursor cursor = new Cursor(channels.clone());
+        cursor.seek(from_micros);
+        return cursor;
+    }
+
+    /**
+     * Finds the first record from a given time on where a channel is inside a range. Blocks whose
+     * indexed range doesn't overlap are skipped without being read.
+     * @param channel channel index
+     * @param min lowest matching value
+     * @param max highest matching value
+     * @param from_micros where to start looking
+     * @return FPGA timestamp of the match in microseconds, or -1 if there isn't one
+     */
+    public long findFirst(int channel, double min, double max, long from_micros) {
+        int[] one = {channel};
+        for (int block = firstBlockEndingAfter(from_micros); block < block_count; block++) {
+            int at = block * names.length + channel;
+            if (block_max[at] < min || block_min[at] > max) {
+                continue;
+            }
+            Cursor cursor = cursor(Math.max(from_micros, block_first[block]), one);
+            while (cursor.next() && cursor.block == block) {
+                double value = cursor.get(0);
+                if (value >= min && value <= max) {
+                    return cursor.getTimestamp();
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a window of the log as CSV, time in seconds then one column per channel.
+     * @param out CSV file to write
+     * @param from_micros start of the window, FPGA microseconds
+     * @param to_micros end of the window, inclusive
+     * @param channels channel indexes to export
+     * @return rows written
+     * @throws IOException if the CSV can't be written
+     */
+    public long exportCsv(File out, long from_micros, long to_micros, int[] channels) throws IOException {
+        long rows = 0;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(out))) {
+            writer.write("time_s");
+            for (int channel : channels) {
+                writer.write(',');
+                writer.write(names[channel]);
+            }
+            writer.newLine();
+
+            Cursor cursor = cursor(from_micros, channels);
+            while (cursor.next() && cursor.getTimestamp() <= to_micros) {
+                writer.write(Double.toString(cursor.getTimestamp() / 1e6));
+                for (int i = 0; i < channels.length; i++) {
+                    writer.write(',');
+                    writer.write(Double.toString(cursor.get(i)));
+                }
+                writer.newLine();
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @param name channel name
+     * @return its index, or -1 if the log doesn't have it
+     */
+    public int getChannel(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String[] getChannelNames() {
+        return names.clone();
+    }
+
+    public Encoding getEncoding(int channel) {
+        return encodings[channel];
+    }
+
+    /**
+     * @return wall clock ms when the logger started
+     */
+    public long getCreatedMillis() {
+        return created;
+    }
+
+    public int getBlockCount() {
+        return block_count;
+    }
+
+    public long getRecordCount() {
+        long records = 0;
+        for (int block = 0; block < block_count; block++) {
+            records += block_records[block];
+        }
+        return records;
+    }
+
+    /**
+     * @return FPGA time of the first record in microseconds, 0 if the log is empty
+     */
+    public long getStartMicros() {
+        return block_count == 0 ? 0 : block_first[0];
+    }
+
+    /**
+     * @return FPGA time of the last record in microseconds, 0 if the log is empty
+     */
+    public long getEndMicros() {
+        return block_count == 0 ? 0 : block_last[block_count - 1];
+    }
+
+    /**
+     * @param channel channel index
+     * @return the smallest value it has anywhere in the log, from the index
+     */
+    public double getMin(int channel) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int block = 0; block < block_count; block++) {
+            min = Math.min(min, block_min[block * names.length + channel]);
+        }
+        return min;
+    }
+
+    /**
+     * @param channel channel index
+     * @return the largest value it has anywhere in the log, from the index
+     */
+    public double getMax(int channel) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int block = 0; block < block_count; block++) {
+            max = Math.max(max, block_max[block * names.length + channel]);
+        }
+        return max;
+    }
+
+    public void close() throws IOException {
+        raf.close();
+    }
+}
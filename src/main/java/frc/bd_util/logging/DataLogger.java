@@ -0,0 +1,397 @@
+package frc.bd_util.logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.bd_util.BDConstants.DATA_LOGGER;
+import frc.bd_util.BDManager;
+import frc.bd_util.BDUpdatable;
+import frc.bd_util.UpdateRate;
+import frc.bd_util.logging.DataLogFormat.Encoding;
+
+/**
+ * Records every channel every tick into .bdlog files, see {@link DataLogFormat}.<p>
+ * Channels are added with {@link #addChannel} before {@link #start()}, which fixes the schema.
+ * {@link #log()} is called once at the end of every robot loop and writes one record into a
+ * preallocated direct buffer, with no allocation. A full buffer, or one that has been filling for
+ * {@link DATA_LOGGER#FLUSH_PERIOD} seconds, is handed to the "DataLogger" thread, which writes it
+ * to disk and hands it back. If every buffer is waiting on the disk, records are dropped and
+ * counted instead of blocking the loop.<p>
+ * Logs go to a USB stick when one is mounted, otherwise to {@link DATA_LOGGER#ROBOT_DIR}. Files are
+ * split at {@link DATA_LOGGER#MAX_FILE_BYTES}, and the oldest logs in the directory are deleted
+ * to stay under that location's quota.
+ */
+public class DataLogger implements BDUpdatable {
+    private static DataLogger _singleton;
+
+    private static class Channel {
+        final String name;
+        final Encoding encoding;
+        final double resolution;
+        final DoubleSupplier value;
+        // DELTA only, the quantized value the reader will have reconstructed so far.
+        long tracked = 0;
+
+        Channel(String name, Encoding encoding, double resolution, DoubleSupplier value) {
+            this.name = name;
+            this.encoding = encoding;
+            this.resolution = resolution;
+            this.value = value;
+        }
+    }
+
+    private final ArrayList<Channel> channel_list = new ArrayList<Channel>();
+    private Channel[] channels;
+    private int record_bytes;
+    private ByteBuffer header;
+    private boolean started = false;
+
+    // Main thread side.
+    private ArrayBlockingQueue<ByteBuffer> free_buffers;
+    private ArrayBlockingQueue<ByteBuffer> full_buffers;
+    private ByteBuffer current = null;
+    private int current_records = 0;
+    private long block_start = 0;
+    private long last_timestamp = 0;
+    private volatile long records = 0;
+    private volatile long dropped = 0;
+
+    // Writer thread side.
+    private File directory;
+    private long quota_bytes;
+    private String session;
+    private int file_index = 0;
+    private FileChannel file = null;
+    private File file_path = null;
+    private long file_bytes = 0;
+    private long directory_bytes = 0;
+    private volatile long written_bytes = 0;
+    private volatile long evicted_files = 0;
+    private volatile long write_errors = 0;
+    private volatile String file_name = "not started";
+
+    public static DataLogger getInstance() {
+        if (_singleton != null) {
+            return _singleton;
+        } else {
+            DriverStation.reportError("DataLogger is not initialized", false);
+            return null;
+        }
+    }
+
+    /**
+     * Call once, after {@link BDManager#initialize()} and before anything adds channels.
+     */
+    public static void initialize() {
+        if (_singleton == null) {
+            _singleton = new DataLogger();
+        }
+    }
+
+    private DataLogger() {
+        BDManager.getInstance().register(this);
+    }
+
+    /**
+     * Adds a channel. Only allowed before {@link #start()}.
+     * @param name unique name, '/' separated by convention
+     * @param encoding how it's stored
+     * @param resolution smallest change kept, only used by {@link Encoding#DELTA}
+     * @param value read once per record on the main thread, must not allocate
+     */
+    public void addChannel(String name, Encoding encoding, double resolution, DoubleSupplier value) {
+        if (started) {
+            DriverStation.reportError("DataLogger channel " + name + " added after start, not logged", false);
+            return;
+        }
+        channel_list.add(new Channel(name, encoding, resolution, value));
+    }
+
+    /**
+     * Adds a {@link Encoding#DOUBLE} or {@link Encoding#FLOAT} channel. Only allowed before {@link #start()}.
+     */
+    public void addChannel(String name, Encoding encoding, DoubleSupplier value) {
+        addChannel(name, encoding, 1.0, value);
+    }
+
+    /**
+     * Fixes the schema, allocates the buffers and starts the writer thread.
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        channels = channel_list.toArray(new Channel[0]);
+
+        record_bytes = DataLogFormat.TIMESTAMP_BYTES;
+        int delta_channels = 0;
+        int header_bytes = 4 + 4 + 8 + 4 + 4;
+        for (Channel channel : channels) {
+            record_bytes += channel.encoding.getBytes();
+            if (channel.encoding == Encoding.DELTA) {
+                delta_channels++;
+            }
+            header_bytes += 2 + channel.name.getBytes(StandardCharsets.UTF_8).length + 1 + 8;
+        }
+
+        header = ByteBuffer.allocate(header_bytes);
+        header.putInt(DataLogFormat.MAGIC);
+        header.putInt(DataLogFormat.VERSION);
+        header.putLong(System.currentTimeMillis());
+        header.putInt(channels.length);
+        for (Channel channel : channels) {
+            byte[] name = channel.name.getBytes(StandardCharsets.UTF_8);
+            header.putShort((short) name.length);
+            header.put(name);
+            header.put((byte) channel.encoding.ordinal());
+            header.putDouble(channel.resolution);
+        }
+        header.putInt(record_bytes);
+        header.flip();
+
+        int block_header = DataLogFormat.BLOCK_HEADER_BYTES + delta_channels * 8;
+        int buffer_bytes = Math.max(DATA_LOGGER.BUFFER_BYTES, block_header + record_bytes);
+        free_buffers = new ArrayBlockingQueue<ByteBuffer>(DATA_LOGGER.BUFFERS);
+        full_buffers = new ArrayBlockingQueue<ByteBuffer>(DATA_LOGGER.BUFFERS);
+        for (int i = 0; i < DATA_LOGGER.BUFFERS; i++) {
+            free_buffers.add(ByteBuffer.allocateDirect(buffer_bytes));
+        }
+
+        File usb = new File(DATA_LOGGER.USB_DIR);
+        if (usb.getParentFile().isDirectory() && (usb.isDirectory() || usb.mkdirs()) && usb.canWrite()) {
+            directory = usb;
+            quota_bytes = DATA_LOGGER.USB_QUOTA_BYTES;
+        } else {
+            directory = new File(DATA_LOGGER.ROBOT_DIR);
+            directory.mkdirs();
+            quota_bytes = DATA_LOGGER.ROBOT_QUOTA_BYTES;
+        }
+        session = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+
+        Thread writer = new Thread(this::write, "DataLogger");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+
+        started = true;
+        System.out.println("[DataLogger] " + channels.length + " channels, " + record_bytes + " bytes per record, logging to " + directory);
+    }
+
+    /**
+     * Writes one record of every channel. Main thread, once per loop.
+     */
+    public void log() {
+        if (!started) {
+            return;
+        }
+        long now = RobotController.getFPGATime();
+
+        if (current != null && current.remaining() < record_bytes) {
+            finishBlock();
+        }
+        if (current == null) {
+            current = free_buffers.poll();
+            if (current == null) {
+                dropped++;
+                return;
+            }
+            beginBlock(now);
+        }
+
+        current.putLong(now);
+        for (int i = 0; i < channels.length; i++) {
+            Channel channel = channels[i];
+            double value = channel.value.getAsDouble();
+            switch (channel.encoding) {
+                case DOUBLE:
+                    current.putDouble(value);
+                    break;
+                case FLOAT:
+                    current.putFloat((float) value);
+                    break;
+                case DELTA:
+                    long delta = Math.round(value / channel.resolution) - channel.tracked;
+                    delta = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, delta));
+                    channel.tracked += delta;
+                    current.putShort((short) delta);
+                    break;
+            }
+        }
+        current_records++;
+        last_timestamp = now;
+        records++;
+
+        if (now - block_start >= DATA_LOGGER.FLUSH_PERIOD * 1e6) {
+            finishBlock();
+        }
+    }
+
+    private void beginBlock(long now) {
+        current.clear();
+        current.putInt(DataLogFormat.BLOCK_MAGIC);
+        current.putInt(0);
+        current.putLong(now);
+        current.putLong(now);
+        for (Channel channel : channels) {
+            if (channel.encoding == Encoding.DELTA) {
+                current.putLong(channel.tracked);
+            }
+        }
+        current_records = 0;
+        block_start = now;
+    }
+
+    private void finishBlock() {
+        current.putInt(4, current_records);
+        current.putLong(16, last_timestamp);
+        current.flip();
+        // There are only as many buffers as the queue holds, so this always fits.
+        full_buffers.offer(current);
+        current = null;
+    }
+
+    /**
+     * Writer thread. Writes full buffers to disk and hands them back.
+     */
+    private void write() {
+        while (true) {
+            ByteBuffer block;
+            try {
+                block = full_buffers.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                if (file == null || file_bytes + block.remaining() > DATA_LOGGER.MAX_FILE_BYTES) {
+                    openNext();
+                }
+                int bytes = block.remaining();
+                while (block.hasRemaining()) {
+                    file.write(block);
+                }
+                file.force(false);
+                file_bytes += bytes;
+                directory_bytes += bytes;
+                written_bytes += bytes;
+                if (directory_bytes > quota_bytes) {
+                    evict();
+                }
+            } catch (IOException e) {
+                write_errors++;
+                DriverStation.reportWarning("DataLogger could not write " + file_path + ": " + e.getMessage(), false);
+                closeFile();
+            } finally {
+                block.clear();
+                free_buffers.offer(block);
+            }
+        }
+    }
+
+    private void openNext() throws IOException {
+        closeFile();
+        file_path = new File(directory, String.format("bdlog_%s_%03d%s", session, file_index++, DataLogFormat.EXTENSION));
+        file = FileChannel.open(file_path.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer file_header = header.duplicate();
+        while (file_header.hasRemaining()) {
+            file.write(file_header);
+        }
+        file_bytes = header.limit();
+        file_name = file_path.getName();
+
+        directory_bytes = 0;
+        for (File log : listLogs()) {
+            directory_bytes += log.length();
+        }
+        evict();
+    }
+
+    private void closeFile() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // Nothing left to do with it.
+            }
+            file = null;
+        }
+    }
+
+    /**
+     * Deletes the oldest logs, never the one being written, until the directory fits the quota.
+     */
+    private void evict() {
+        File[] logs = listLogs();
+        Arrays.sort(logs, Comparator.comparingLong(File::lastModified));
+        for (File log : logs) {
+            if (directory_bytes <= quota_bytes) {
+                break;
+            }
+            if (log.equals(file_path)) {
+                continue;
+            }
+            long length = log.length();
+            if (log.delete()) {
+                directory_bytes -= length;
+                evicted_files++;
+                // The reader's cached index, if the log was ever read on the robot.
+                DataLogReader.indexFile(log).delete();
+            }
+        }
+    }
+
+    private File[] listLogs() {
+        File[] logs = directory.listFiles((dir, name) -> name.endsWith(DataLogFormat.EXTENSION));
+        return logs == null ? new File[0] : logs;
+    }
+
+    public long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * @return records not logged because the writer thread fell behind
+     */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    public void update() {
+
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.ONE_HZ;
+    }
+
+    public String getID() {
+        return "DataLogger";
+    }
+
+    public String getStatus() {
+        String status = String.format("%s, %d records, %.1f MB", file_name, records, written_bytes / 1e6);
+        if (dropped > 0) {
+            status += ", " + dropped + " DROPPED";
+        }
+        if (write_errors > 0) {
+            status += ", " + write_errors + " WRITE ERRORS";
+        }
+        if (evicted_files > 0) {
+            status += ", " + evicted_files + " old logs deleted";
+        }
+        return status;
+    }
+}
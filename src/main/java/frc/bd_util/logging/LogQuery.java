@@ -0,0 +1,110 @@
+package frc.bd_util.logging;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Command line tool for .bdlog files, run by the {@code queryLog} Gradle task on a laptop.
+ * Uses only {@link DataLogReader}, so it doesn't need WPILib or a robot.
+ * <pre>
+ * info &lt;log&gt;
+ * find &lt;log&gt; &lt;channel&gt; &lt;min&gt; &lt;max&gt; [from_s]
+ * csv  &lt;log&gt; &lt;out.csv&gt; &lt;from_s&gt; &lt;to_s&gt; [channel ...]
+ * </pre>
+ * Times are FPGA seconds, as the log records them. csv exports every channel if none are given.
+ */
+public final class LogQuery {
+    private LogQuery() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+
+        long start = System.nanoTime();
+        try (DataLogReader reader = new DataLogReader(new File(args[1]))) {
+            System.out.printf("Opened %s in %.1f ms%n", args[1], (System.nanoTime() - start) / 1e6);
+            switch (args[0]) {
+                case "info":
+                    info(reader);
+                    break;
+                case "find":
+                    find(reader, args);
+                    break;
+                case "csv":
+                    csv(reader, args);
+                    break;
+                default:
+                    usage();
+            }
+        }
+    }
+
+    private static void usage() {
+        System.out.println("usage: info <log>");
+        System.out.println("       find <log> <channel> <min> <max> [from_s]");
+        System.out.println("       csv <log> <out.csv> <from_s> <to_s> [channel ...]");
+    }
+
+    private static void info(DataLogReader reader) {
+        System.out.printf("%d records in %d blocks, %.3f s to %.3f s%n", reader.getRecordCount(),
+            reader.getBlockCount(), reader.getStartMicros() / 1e6, reader.getEndMicros() / 1e6);
+        String[] names = reader.getChannelNames();
+        for (int i = 0; i < names.length; i++) {
+            System.out.printf("  %-32s %-6s min %-12.4g max %.4g%n", names[i], reader.getEncoding(i),
+                reader.getMin(i), reader.getMax(i));
+        }
+    }
+
+    private static void find(DataLogReader reader, String[] args) throws IOException {
+        if (args.length < 5) {
+            usage();
+            return;
+        }
+        int channel = channel(reader, args[2]);
+        long from = args.length > 5 ? seconds(args[5]) : 0;
+        long start = System.nanoTime();
+        long found = reader.findFirst(channel, Double.parseDouble(args[3]), Double.parseDouble(args[4]), from);
+        double search_ms = (System.nanoTime() - start) / 1e6;
+        if (found < 0) {
+            System.out.printf("No match (%.1f ms)%n", search_ms);
+        } else {
+            System.out.printf("First match at %.6f s (%.1f ms)%n", found / 1e6, search_ms);
+        }
+    }
+
+    private static void csv(DataLogReader reader, String[] args) throws IOException {
+        if (args.length < 5) {
+            usage();
+            return;
+        }
+        int[] channels;
+        if (args.length > 5) {
+            channels = new int[args.length - 5];
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = channel(reader, args[5 + i]);
+            }
+        } else {
+            channels = new int[reader.getChannelNames().length];
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = i;
+            }
+        }
+        long start = System.nanoTime();
+        long rows = reader.exportCsv(new File(args[2]), seconds(args[3]), seconds(args[4]), channels);
+        System.out.printf("Wrote %d rows to %s (%.1f ms)%n", rows, args[2], (System.nanoTime() - start) / 1e6);
+    }
+
+    private static int channel(DataLogReader reader, String name) throws IOException {
+        int channel = reader.getChannel(name);
+        if (channel < 0) {
+            throw new IOException("No channel named " + name);
+        }
+        return channel;
+    }
+
+    private static long seconds(String value) {
+        return (long) (Double.parseDouble(value) * 1e6);
+    }
+}
@@ -16,11 +16,17 @@ import edu.wpi.first.wpilibj.shuffleboard.BuiltInWidgets;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
 import edu.wpi.first.wpilibj.shuffleboard.SimpleWidget;
-import edu.wpi.first.wpilibj.shuffleboard.SuppliedValueWidget;
 import edu.wpi.first.wpilibj2.command.ParallelCommandGroup;
+import frc.bd_util.TelemetryPublisher;
+import frc.bd_util.UpdateRate;
+import frc.bd_util.custom_talon.TalonConfigWriter;
+import frc.bd_util.custom_talon.TalonFXW;
+import frc.bd_util.custom_talon.TalonConfigWriter.Param;
 
 public class PIDTunerTalon {
     TalonFX tuning_motor;
+    // Gain changes go through here so slider drags never block the NetworkTables thread.
+    TalonConfigWriter config_writer;
     ShuffleboardTab subsystem_tab;
     int id;
     int modifier = 1;
@@ -31,8 +37,10 @@ public class PIDTunerTalon {
     public String cur_string = "none";
     HashMap<String, Double> save = new HashMap<String, Double>();
     double threshold = 5.0;
-    SuppliedValueWidget<double[]> veloGraph;
-    SuppliedValueWidget<Double> errorGraph;
+    SimpleWidget veloGraph;
+    SimpleWidget errorGraph;
+    // Reused by getGraphSetpoints(), the graph is published every loop.
+    private final double[] graph_setpoints = new double[2];
     GenericEntry time_to_threshold_reporter;
     SimpleWidget benchWidget;
     SimpleWidget RPMDirect;
@@ -44,6 +52,11 @@ public class PIDTunerTalon {
         this.tuning_motor = tuning_motor;
         this.subsystem_tab = tab;
         this.id = tuning_motor.getDeviceID();
+        this.config_writer = tuning_motor instanceof TalonFXW ? ((TalonFXW) tuning_motor).getConfigWriter() : new TalonConfigWriter(tuning_motor);
+        if (tuning_motor instanceof TalonFXW) {
+            // The error graph reads Status_13 every tick, which TalonFXW otherwise slows to a crawl.
+            ((TalonFXW) tuning_motor).setPIDFrameNeeded(true);
+        }
         initalize();
     }
 
@@ -81,7 +94,7 @@ public class PIDTunerTalon {
 
         inst.addListener(kPwidgetDirect.getEntry(), EnumSet.of(Kind.kValueAll), event -> {
             if (!sus_mode) {
-                tuning_motor.config_kP(0, event.valueData.value.getDouble(), 30);
+                config_writer.set(Param.KP, event.valueData.value.getDouble());
             } else {
                 kPwidgetDirect.getEntry().setValue(save.get("kP"));
             }
@@ -95,7 +108,7 @@ public class PIDTunerTalon {
         this.kIwidgetDirect = kILayout.add("kI Direct", 1.0);
         inst.addListener(kIwidgetDirect.getEntry(), EnumSet.of(Kind.kValueAll), event -> {
             if (!sus_mode) {
-                tuning_motor.config_kI(0, event.valueData.value.getDouble(), 30);
+                config_writer.set(Param.KI, event.valueData.value.getDouble());
             } else {
                 kIwidgetDirect.getEntry().setDouble(save.get("kI"));
             }
@@ -109,7 +122,7 @@ public class PIDTunerTalon {
         this.kDwidgetDirect = kDLayout.add("kD Direct", 1.0);
         inst.addListener(kDwidgetDirect.getEntry(), EnumSet.of(Kind.kValueAll), event -> {
             if (!sus_mode) {
-                tuning_motor.config_kD(0, event.valueData.value.getDouble(), 30);
+                config_writer.set(Param.KD, event.valueData.value.getDouble());
             } else {
                 kDwidgetDirect.getEntry().setDouble(save.get("kD"));
             }
@@ -124,7 +137,7 @@ public class PIDTunerTalon {
 
         inst.addListener(FFTune.getEntry(), EnumSet.of(Kind.kValueAll), event -> {
             if (!sus_mode) {
-                tuning_motor.config_kF(0, event.valueData.value.getDouble(), 30);
+                config_writer.set(Param.KF, event.valueData.value.getDouble());
             } else {
                 FFTune.getEntry().setValue(save.get("FFTune"));
             }
@@ -197,17 +210,21 @@ public class PIDTunerTalon {
     }
 
     public void graphSetups() {
-        this.veloGraph = subsystem_tab.addDoubleArray("Current Velocity", () -> getGraphSetpoints())
+        TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+
+        this.veloGraph = subsystem_tab.add("Current Velocity", graph_setpoints)
             .withWidget(BuiltInWidgets.kGraph)
             .withProperties(Map.of("Visible time", 20, "Unit", "RPM")
         )
         .withPosition(2, 0);
+        telemetry.addDoubleArray(veloGraph.getEntry(), UpdateRate.EVERY_TICK, graph_setpoints, this::getGraphSetpoints);
 
-        this.errorGraph = subsystem_tab.addNumber("Current Error", () -> tuning_motor.getErrorDerivative() * CONVERSION_RATE)
+        this.errorGraph = subsystem_tab.add("Current Error", 0.0)
             .withWidget(BuiltInWidgets.kGraph)
             .withProperties(Map.of("Visible time", 20, "Unit", "RPM")
         )
         .withPosition(5, 0);
+        telemetry.addDouble(errorGraph.getEntry(), UpdateRate.EVERY_TICK, () -> tuning_motor.getErrorDerivative() * CONVERSION_RATE);
     }
 
     public void setBenchValue(boolean value) {
@@ -219,7 +236,9 @@ public class PIDTunerTalon {
     }
 
     public double[] getGraphSetpoints() {
-        return new double[] {tuning_motor.getSelectedSensorVelocity() * CONVERSION_RATE, RPMDirect.getEntry().getDouble(0.0)};
+        graph_setpoints[0] = tuning_motor.getSelectedSensorVelocity() * CONVERSION_RATE;
+        graph_setpoints[1] = RPMDirect.getEntry().getDouble(0.0);
+        return graph_setpoints;
     }
 
 
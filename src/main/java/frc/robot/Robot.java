@@ -4,10 +4,17 @@
 
 package frc.robot;
 
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import frc.bd_util.BDManager;
+import frc.bd_util.DeviceConfigCache;
+import frc.bd_util.DeviceInitializer;
+import frc.bd_util.LoopProfiler;
+import frc.bd_util.custom_talon.TalonFXW;
+import frc.bd_util.logging.DataLogger;
+import frc.bd_util.logging.DataLogFormat.Encoding;
 import frc.swervelib.util.CTREConfigs;
 
 /**
@@ -23,6 +30,9 @@ public class Robot extends TimedRobot {
 
   private RobotContainer m_robotContainer;
 
+  private DataLogger logger;
+  private long last_loop_micros = 0;
+
   /**
    * This function is run when the robot is first started up and should be used for any
    * initialization code.
@@ -33,7 +43,20 @@ public class Robot extends TimedRobot {
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
     BDManager.initialize();
+    DeviceConfigCache.initialize();
+    DataLogger.initialize();
+    logger = DataLogger.getInstance();
+    logger.addChannel("Robot/Loop ms", Encoding.FLOAT, () -> last_loop_micros / 1000.0);
     m_robotContainer = new RobotContainer();
+    // After RobotContainer, so its button bindings are in before the profiler's.
+    LoopProfiler.initialize();
+    // Every channel is in by now.
+    logger.start();
+    // Anything configured in the background has to be done before the robot can be enabled. Subsystems
+    // join their own devices first and stay disabled if one fails, this catches anything left over.
+    DeviceInitializer.getInstance().join();
+    // Every device is configured, so the fingerprints only need writing once.
+    DeviceConfigCache.getInstance().save();
   }
 
   /**
@@ -49,8 +72,21 @@ public class Robot extends TimedRobot {
     // commands, running already-scheduled commands, removing finished or interrupted commands,
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
+    long start = RobotController.getFPGATime();
+    // Every motor's signal cache ages against this instead of reading the clock itself.
+    TalonFXW.stampLoop(start);
+    long profile_start = LoopProfiler.beginLoop();
     CommandScheduler.getInstance().run();
+    LoopProfiler.stop(LoopProfiler.SCHEDULER, profile_start);
+
+    long update_start = LoopProfiler.start();
     BDManager.getInstance().update();
+    LoopProfiler.stop(LoopProfiler.BDMANAGER, update_start);
+
+    LoopProfiler.stop(LoopProfiler.LOOP, profile_start);
+    last_loop_micros = RobotController.getFPGATime() - start;
+    m_robotContainer.getWarmup().loopFinished(last_loop_micros, isEnabled());
+    logger.log();
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
@@ -58,7 +94,11 @@ public class Robot extends TimedRobot {
   public void disabledInit() {}
 
   @Override
-  public void disabledPeriodic() {}
+  public void disabledPeriodic() {
+    m_robotContainer.prefetchSelectedAuto();
+    // Gets the drive code compiled before the first enabled loop. Never sends motor output.
+    m_robotContainer.getWarmup().run();
+  }
 
   /** This autonomous runs the autonomous command selected by your {@link RobotContainer} class. */
   @Override
@@ -13,13 +13,17 @@ import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import edu.wpi.first.wpilibj2.command.button.JoystickButton;
+import frc.bd_util.CANMonitor;
+import frc.bd_util.logging.DataLogger;
 import frc.bd_util.driver.JoyRumbler;
 import frc.bd_util.driver.JoyRumbler.RUMBLE_TYPE;
 import frc.robot.commands.*;
 import frc.robot.commands.autos.ExampleAuto1;
 import frc.robot.commands.autos.ExampleCommand;
 import frc.robot.subsystems.*;
-import frc.swervelib.util.SwerveSettings;
+import frc.swervelib.util.SwerveWarmup;
+import frc.swervelib.util.UsesPaths;
+import frc.swervelib.util.SwerveSettings.PATH_LIST;
 
 /**
  * This class is where the bulk of the robot should be declared. Since Command-based is a
@@ -37,7 +41,10 @@ public class RobotContainer {
 
   /* Subsystems */
   private final Swerve swerve = new Swerve();
+  private final CANMonitor can_monitor = new CANMonitor();
+  private final SwerveWarmup warmup = new SwerveWarmup();
   SendableChooser<Command> autoChooser = new SendableChooser<>();
+  private Command lastPrefetched = null;
 
   /** The container for the robot. Contains subsystems, OI devices, and commands. */
   public RobotContainer() {
@@ -45,6 +52,8 @@ public class RobotContainer {
     boolean fieldRelative = true;
     boolean openLoop = true;
     swerve.setDefaultCommand(new TeleopSwerve(swerve, driver, fieldRelative, openLoop));
+    swerve.registerCANDevices(can_monitor);
+    swerve.registerLogChannels(DataLogger.getInstance());
     
     Shuffleboard.getTab("auto").add(autoChooser);
 
@@ -74,7 +83,26 @@ public class RobotContainer {
     // it is set as a command that can run in parallel :)
     swerve.addEvent("fire_ball", new ExampleCommand());
     autoChooser.addOption("full auto 1", new ExampleAuto1(swerve));
-    autoChooser.addOption("path important", swerve.getFullAutoPath(SwerveSettings.PATH_LIST.Path3));
+    autoChooser.addOption("path important", swerve.getFullAutoPath(PATH_LIST.Path3));
+  }
+
+  /**
+   * Starts loading the paths for whichever auto is selected, whenever the selection changes.
+   * Autos say which paths they use through {@link UsesPaths}. Meant to be called while disabled.
+   */
+  public void prefetchSelectedAuto() {
+    Command selected = autoChooser.getSelected();
+    if (selected != null && selected != lastPrefetched && selected instanceof UsesPaths) {
+      swerve.prefetchPaths(((UsesPaths) selected).getPaths());
+      lastPrefetched = selected;
+    }
+  }
+
+  /**
+   * @return the JIT warm-up routine, run by {@link Robot} while disabled
+   */
+  public SwerveWarmup getWarmup() {
+    return warmup;
   }
 
   /**
@@ -3,13 +3,13 @@ package frc.robot.commands;
 import frc.robot.subsystems.Swerve;
 import frc.swervelib.util.SwerveSettings;
 import edu.wpi.first.wpilibj.XboxController;
-import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 
 
 public class TeleopSwerve extends CommandBase {
     private double rotation;
-    private Translation2d translation;
+    private double translationX;
+    private double translationY;
     private boolean fieldRelative;
     private boolean openLoop;
     
@@ -45,8 +45,9 @@ public class TeleopSwerve extends CommandBase {
         double save2 = xAxis;
         xAxis = Math.signum(save2) * save2 * save2;
 
-        translation = new Translation2d(yAxis, xAxis).times(SwerveSettings.Swerve.maxSpeed);
+        translationX = yAxis * SwerveSettings.Swerve.maxSpeed;
+        translationY = xAxis * SwerveSettings.Swerve.maxSpeed;
         rotation = rAxis * SwerveSettings.Swerve.maxAngularVelocity;
-        s_Swerve.drive(translation, rotation, fieldRelative, openLoop);
+        s_Swerve.drive(translationX, translationY, rotation, fieldRelative, openLoop);
     }
 }
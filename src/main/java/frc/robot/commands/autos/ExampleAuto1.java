@@ -1,21 +1,29 @@
 package frc.robot.commands.autos;
 
 import frc.robot.subsystems.Swerve;
+import frc.swervelib.util.UsesPaths;
 import frc.swervelib.util.SwerveSettings.PATH_LIST;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 
-public class ExampleAuto1 extends SequentialCommandGroup {
+public class ExampleAuto1 extends SequentialCommandGroup implements UsesPaths {
+    private final PATH_LIST[] paths;
+
     public ExampleAuto1(Swerve s_Swerve){
-        Command paths = s_Swerve.getFullAutoPath(PATH_LIST.Path1, PATH_LIST.Path2);
+        Command full_auto = s_Swerve.getFullAutoPath(PATH_LIST.Path1, PATH_LIST.Path2);
         // or
         Command intro_path = s_Swerve.getSoloPathCommand(PATH_LIST.Path1, true);
         Command last_path = s_Swerve.getSoloPathCommand(PATH_LIST.Path2);
 
         addCommands(
-            paths,
+            full_auto,
             intro_path,
             last_path
         );
+        this.paths = UsesPaths.pathsOf(full_auto, intro_path, last_path);
+    }
+
+    public PATH_LIST[] getPaths() {
+        return paths.clone();
     }
 }
\ No newline at end of file
@@ -1,33 +1,55 @@
 package frc.robot.subsystems;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
 import com.ctre.phoenix.motorcontrol.NeutralMode;
 import com.ctre.phoenix.sensors.Pigeon2;
-import com.pathplanner.lib.PathPlanner;
+import com.ctre.phoenix.sensors.Pigeon2Configuration;
+import com.ctre.phoenix.sensors.PigeonIMU_StatusFrame;
 import com.pathplanner.lib.PathPlannerTrajectory;
 import com.pathplanner.lib.auto.PIDConstants;
 import com.pathplanner.lib.auto.SwerveAutoBuilder;
 
+import frc.bd_util.BDManager;
+import frc.bd_util.CANMonitor;
+import frc.bd_util.DeviceConfigCache;
+import frc.bd_util.DeviceInitializer;
+import frc.bd_util.LoopProfiler;
+import frc.bd_util.TelemetryPublisher;
+import frc.bd_util.UpdateRate;
+import frc.bd_util.logging.DataLogger;
+import frc.bd_util.logging.DataLogFormat.Encoding;
 import frc.robot.Robot;
+import frc.swervelib.math.ChassisVelocityEstimator;
+import frc.swervelib.math.SwerveKinematicsEngine;
+import frc.swervelib.util.AsyncOdometry;
+import frc.swervelib.util.DriveRequestMode;
+import frc.swervelib.util.PathCommand;
+import frc.swervelib.util.PigeonStatusProfile;
+import frc.swervelib.util.PoseHistory;
+import frc.swervelib.util.TrajectoryCache;
+import frc.swervelib.util.TrajectoryLoader;
+import frc.swervelib.util.SwerveSensorSnapshot;
+import frc.swervelib.util.VisionPoseFusion;
 import frc.swervelib.util.SwerveSettings;
 import frc.swervelib.util.SwerveSettings.PATH_LIST;
 import frc.swervelib.util.SwerveSettings.ShuffleboardConstants.BOARD_PLACEMENT;
+import frc.swervelib.util.SwerveSettings.VisionConstants;
 import frc.swervelib.util.SwerveModule;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
 import edu.wpi.first.wpilibj.shuffleboard.BuiltInWidgets;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
@@ -38,15 +60,50 @@ import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 public class Swerve extends SubsystemBase {
     public HashMap<String, Command> events = new HashMap<String, Command>();
-    public HashMap<PATH_LIST, PathPlannerTrajectory> trajectories = new HashMap<PATH_LIST, PathPlannerTrajectory>();
-    public SwerveDriveOdometry swerveOdometry;
+    public TrajectoryCache trajectories;
+    public SwerveDrivePoseEstimator poseEstimator;
+    public AsyncOdometry asyncOdometry;
+    public VisionPoseFusion visionFusion;
+    public SwerveKinematicsEngine kinematicsEngine;
+    public PoseHistory poseHistory;
     public SwerveModule[] mSwerveMods;
+    public SwerveSensorSnapshot snapshot;
     public Pigeon2 gyro;
     public ShuffleboardTab sub_tab;
     public SwerveAutoBuilder builder;
-    public double chassis_speed; // meters / second
+    public ChassisVelocityEstimator velocityEstimator;
     public Pose2d last_pose;
-    public Instant last_instant;
+
+    // Null until the first periodic(), so the first one always applies a profile.
+    private Boolean status_frames_active = null;
+    private PigeonStatusProfile gyro_profile = null;
+
+    // Copied out of the snapshot every loop to hand module measurements to the velocity estimator.
+    private final double[] module_speeds = new double[4];
+    private final double[] module_angles = new double[4];
+    // Copied out of the snapshot every loop for the pose estimator.
+    private final SwerveModulePosition[] module_positions = new SwerveModulePosition[4];
+    // {angle degrees, speed MPS, drive amps, drive temp C} for each module, in module order.
+    private final double[] module_telemetry = new double[4 * 4];
+
+    // The last drive request, logged so replay can recompute the module commands. Cleared every periodic().
+    private DriveRequestMode request_mode = DriveRequestMode.NONE;
+    private double request_x = 0.0;
+    private double request_y = 0.0;
+    private double request_rotation = 0.0;
+    // Counts resetOdometry() calls, so replay knows where the pose jumped.
+    private int odometry_resets = 0;
+    // Counts vision measurements applied in periodic(), so replay knows the pose was corrected.
+    private int vision_applied = 0;
+    // The async sampler's samples taken out of its ring this loop, for the log. See AsyncOdometry.pollSample().
+    private final double[][] odometry_samples = new double[SwerveSettings.Swerve.odometryLogSamples][AsyncOdometry.SAMPLE_FIELDS];
+    private final double[][] odometry_distances = new double[SwerveSettings.Swerve.odometryLogSamples][4];
+    private final double[][] odometry_angles = new double[SwerveSettings.Swerve.odometryLogSamples][4];
+    private int odometry_sample_count = 0;
+    // False if any drive device failed or timed out configuring, nothing gets commanded then.
+    private final boolean devices_configured;
+
+    private static final int PERIODIC_PROFILE = LoopProfiler.register("Swerve.periodic");
 
     /**
      * A swerve implementation using MK4 SDS modules, with full field oriented features.<p>
@@ -55,37 +112,92 @@ public class Swerve extends SubsystemBase {
      */
     public Swerve() {
         // Declares and resets the Gyro to default. This wipes all settings about the gyro,
-        // making it easily customizable in code only.
+        // making it easily customizable in code only. Skipped if it's still on defaults from last boot.
+        // Configured in the background alongside the modules, see DeviceInitializer.
         this.gyro = new Pigeon2(SwerveSettings.Swerve.pigeonID);
-        gyro.configFactoryDefault();
-
-        // We also zero the gyro. In future implementations, we might remove this 
-        // to allow us to save orientation data for matches.
-        zeroGyro();
-
-        // Used in the chassis speed calculation, check update() for more info
-        this.chassis_speed = 0.0;
+        DeviceInitializer.getInstance().submit("Pigeon2", () -> {
+            DeviceConfigCache.getInstance().configure("Pigeon2 " + SwerveSettings.Swerve.pigeonID, new Pigeon2Configuration(),
+                () -> gyro.configGetCustomParam(DeviceConfigCache.STAMP_PARAM, 30),
+                stamp -> gyro.configSetCustomParam(stamp, DeviceConfigCache.STAMP_PARAM, 30),
+                gyro::configFactoryDefault);
+            applyGyroStatusProfile(PigeonStatusProfile.ACTIVE, 30);
+            DeviceInitializer.checkCancelled();
+
+            // We also zero the gyro. In future implementations, we might remove this 
+            // to allow us to save orientation data for matches.
+            zeroGyro();
+        });
 
         // Gets us the swerve tab.
         this.sub_tab = Shuffleboard.getTab("swerve_tab");
 
+        // All of the sensor values for a loop are read once into here at the start of periodic(),
+        // and everything else in the loop reads from it.
+        this.snapshot = new SwerveSensorSnapshot(4);
+
         // These are our swerve modules. Each module has it's own constants
         // We also port the subsystem tab straight there so they can add their own information
         // We store them in an array so we can iterate through at any point.
         mSwerveMods = new SwerveModule[] {
-            new SwerveModule(0, SwerveSettings.Swerve.Mod0.constants, sub_tab),
-            new SwerveModule(1, SwerveSettings.Swerve.Mod1.constants, sub_tab),
-            new SwerveModule(2, SwerveSettings.Swerve.Mod2.constants, sub_tab),
-            new SwerveModule(3, SwerveSettings.Swerve.Mod3.constants, sub_tab)
+            new SwerveModule(0, SwerveSettings.Swerve.Mod0.constants, snapshot, sub_tab),
+            new SwerveModule(1, SwerveSettings.Swerve.Mod1.constants, snapshot, sub_tab),
+            new SwerveModule(2, SwerveSettings.Swerve.Mod2.constants, snapshot, sub_tab),
+            new SwerveModule(3, SwerveSettings.Swerve.Mod3.constants, snapshot, sub_tab)
         };
 
-        // SwerveDriveOdometry instances are used to calculate and keep track of the Robot's
-        // pose, which is essentially the coordinates and orientation of the robot.
-        this.swerveOdometry = new SwerveDriveOdometry(SwerveSettings.Swerve.swerveKinematics, getYaw(), getModulePositions());
+        // Every device above configures at the same time. Odometry and the snapshot need them done.
+        // Driving on a half configured module (wrong inversion, no current limit) is worse than not driving.
+        this.devices_configured = DeviceInitializer.getInstance().join();
+        if (!devices_configured) {
+            DriverStation.reportError("Swerve is DISABLED, a drive device did not configure. Fix it and restart robot code.", false);
+        }
+
+        // Something has to be in the snapshot in case drive() is called before the first periodic().
+        snapshot.capture(Timer.getFPGATimestamp(), getYawDegrees(), mSwerveMods);
+
+        // Preallocated kinematics used by drive() and setModuleStates() so the control loop doesn't make garbage.
+        this.kinematicsEngine = new SwerveKinematicsEngine(SwerveSettings.Swerve.moduleTranslations);
+
+        // Chassis velocity from the measured module states, check periodic() for more info
+        this.velocityEstimator = new ChassisVelocityEstimator(kinematicsEngine, SwerveSettings.Swerve.velocityFilterAlpha, SwerveSettings.Swerve.velocityFilterBeta);
+
+        // The pose estimator is used to calculate and keep track of the Robot's pose, which is essentially
+        // the coordinates and orientation of the robot. It's wheel odometry, plus corrections from vision.
+        this.poseEstimator = new SwerveDrivePoseEstimator(
+            SwerveSettings.Swerve.swerveKinematics,
+            getYaw(),
+            getModulePositions(),
+            new Pose2d(),
+            VecBuilder.fill(VisionConstants.stateTranslationStdDev, VisionConstants.stateTranslationStdDev, VisionConstants.stateRotationStdDev),
+            VecBuilder.fill(VisionConstants.baseTranslationStdDev, VisionConstants.baseTranslationStdDev, VisionConstants.baseRotationStdDev)
+        );
+
+        // Timestamped robot poses from the image processing camera, applied by whoever owns the estimator.
+        if (VisionConstants.enabled) {
+            this.visionFusion = new VisionPoseFusion();
+        }
+
+        // If enabled, odometry is sampled and integrated on its own thread at a much higher rate than
+        // periodic(). From here on out, only the sampler touches poseEstimator.
+        if (SwerveSettings.Swerve.asyncOdometry) {
+            this.asyncOdometry = new AsyncOdometry(poseEstimator, this::getYawDegrees, mSwerveMods, SwerveSettings.Swerve.odometryFrequency);
+            asyncOdometry.setVisionFusion(visionFusion);
+            asyncOdometry.start();
+
+            ShuffleboardLayout odometry_layout = BDManager.getInstance().getInstanceManagerialTab()
+            .getLayout("Odometry Sampler", BuiltInLayouts.kList)
+            .withSize(2, 3);
+            TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+            telemetry.addDouble(odometry_layout.add("Avg Jitter ms", 0.0).getEntry(), UpdateRate.ONE_HZ, () -> asyncOdometry.getAverageJitterMs());
+            telemetry.addDouble(odometry_layout.add("Max Jitter ms", 0.0).getEntry(), UpdateRate.ONE_HZ, () -> asyncOdometry.getMaxJitterMs());
+            telemetry.addDouble(odometry_layout.add("Dropped Samples", 0.0).getEntry(), UpdateRate.ONE_HZ, () -> asyncOdometry.getDroppedSamples());
+        }
+
+        // Keeps the last few moments of poses around so we can ask where the robot was at a given time.
+        this.poseHistory = new PoseHistory(SwerveSettings.Swerve.poseHistoryWindow, 0.02);
 
-        // Save our current pose and the instance for velocity calculations in update()
-        last_pose = swerveOdometry.getPoseMeters();
-        last_instant = Instant.now();
+        // Save our current pose
+        last_pose = poseEstimator.getEstimatedPosition();
 
         // The SwerveAutoBuilder is used to create paths for this particular swerve drive.
         // All the PID is contained here, and no other commands relating to PathPlanner have to be created.
@@ -108,12 +220,21 @@ public class Swerve extends SubsystemBase {
         // .withPosition(4, 3)
         // .withWidget(BuiltInWidgets.kGyro);
 
-        // Our speedometer, uses the chassis_speed variable.
-        sub_tab.addDouble("Chassis Speedometer: MPS", () -> getChassisSpeed())
-        .withWidget(BuiltInWidgets.kDial)
-        .withProperties(Map.of("Min", 0.0, "Max", SwerveSettings.Swerve.maxSpeed, "Show value", true))
-        .withSize(4, 3)
-        .withPosition(3, 0);
+        // Dashboard values are pushed by the TelemetryPublisher at the rate each one needs, instead
+        // of every widget being sampled every loop.
+        TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+
+        // Every module's angle, speed, drive current and drive temperature, packed into one entry.
+        telemetry.addDoubleArray(telemetry.entry("Swerve/Modules"), UpdateRate.EVERY_TICK, module_telemetry, this::fillModuleTelemetry);
+
+        // Our speedometer, uses the filtered chassis velocity.
+        telemetry.addDouble(sub_tab.add("Chassis Speedometer: MPS", 0.0)
+            .withWidget(BuiltInWidgets.kDial)
+            .withProperties(Map.of("Min", 0.0, "Max", SwerveSettings.Swerve.maxSpeed, "Show value", true))
+            .withSize(4, 3)
+            .withPosition(3, 0)
+            .getEntry(),
+            UpdateRate.TEN_HZ, this::getChassisSpeed);
 
         // Add RPM and current calculations for each module and place them on the Shuffleboard
         for (int i = 0; i < mSwerveMods.length; i++) {
@@ -124,20 +245,43 @@ public class Swerve extends SubsystemBase {
             .withPosition(placement.getX(), placement.getY())
             .withSize(2, 2);
 
-            layout.addDouble("RPM " + i, () -> Math.abs(cur.mDriveMotor.getObjectRotationsPerMinute()))
-            .withWidget(BuiltInWidgets.kDial)
-            .withProperties(Map.of("Min", 0, "Max", 800, "Show value", true));
-
-            layout.addDouble("AMPS " + i, () -> cur.mDriveMotor.getSupplyCurrent())
-            .withWidget(BuiltInWidgets.kNumberBar)
-            .withProperties(Map.of("Min", 0, "Max", SwerveSettings.Swerve.drivePeakCurrentLimit));
+            // Wheel RPM from the snapshot velocity, instead of reading the motor again.
+            telemetry.addDouble(layout.add("RPM " + i, 0.0)
+                .withWidget(BuiltInWidgets.kDial)
+                .withProperties(Map.of("Min", 0, "Max", 800, "Show value", true))
+                .getEntry(),
+                UpdateRate.TEN_HZ, () -> Math.abs(snapshot.getVelocityMPS(cur.moduleNumber) / SwerveSettings.Swerve.wheelCircumference * 60));
+
+            telemetry.addDouble(layout.add("AMPS " + i, 0.0)
+                .withWidget(BuiltInWidgets.kNumberBar)
+                .withProperties(Map.of("Min", 0, "Max", SwerveSettings.Swerve.drivePeakCurrentLimit))
+                .getEntry(),
+                UpdateRate.TEN_HZ, () -> snapshot.getDriveCurrent(cur.moduleNumber));
         }
 
-        // iterates through the available path enums, and then puts them into the available path
-        // hashmap.
-        for (PATH_LIST enu: PATH_LIST.values()) {
-            trajectories.put(enu, PathPlanner.loadPath(enu.toString(), enu.getConstraints()));
-        }
+        // How many set() calls the change gate in TalonFXW has made vs. skipped, across every module.
+        // These are JNI calls saved, the control frames go out at their own period regardless.
+        ShuffleboardLayout output_layout = BDManager.getInstance().getInstanceManagerialTab()
+        .getLayout("Swerve Output Gate", BuiltInLayouts.kList)
+        .withSize(2, 2);
+        telemetry.addDouble(output_layout.add("set() Calls", 0.0).getEntry(), UpdateRate.ONE_HZ, () -> {
+            long sent = 0;
+            for (SwerveModule mod : mSwerveMods) {
+                sent += mod.mDriveMotor.getSentOutputCount() + mod.mAngleMotor.getSentOutputCount();
+            }
+            return sent;
+        });
+        telemetry.addDouble(output_layout.add("Skipped Calls", 0.0).getEntry(), UpdateRate.ONE_HZ, () -> {
+            long suppressed = 0;
+            for (SwerveModule mod : mSwerveMods) {
+                suppressed += mod.mDriveMotor.getSuppressedOutputCount() + mod.mAngleMotor.getSuppressedOutputCount();
+            }
+            return suppressed;
+        });
+
+        // Paths are loaded the first time they're used, or ahead of time with prefetchPaths().
+        // Precompiled binaries are used when the build made them, JSON otherwise.
+        this.trajectories = new TrajectoryCache(new TrajectoryLoader(), SwerveSettings.trajectoryCacheBudget);
     }
 
     /**
@@ -150,26 +294,52 @@ public class Swerve extends SubsystemBase {
      */
     // TODO add orientation lock w/ joystickbutton
     public void drive(Translation2d translation, double rotation, boolean fieldRelative, boolean isOpenLoop) {
+        drive(translation.getX(), translation.getY(), rotation, fieldRelative, isOpenLoop);
+    }
+
+    /**
+     * Allocation free version of {@link #drive(Translation2d, double, boolean, boolean)}.
+     * @param x Requested x translation in meters / second
+     * @param y Requested y translation in meters / second
+     * @param rotation The value of requested rotation in radians
+     * @param fieldRelative Determines whether or not to establish field oriented control
+     * @param isOpenLoop Determines whether or not to use PID for values; true = yes, false = no.
+     */
+    public void drive(double x, double y, double rotation, boolean fieldRelative, boolean isOpenLoop) {
+        request_mode = fieldRelative ? DriveRequestMode.FIELD_RELATIVE : DriveRequestMode.ROBOT_RELATIVE;
+        request_x = x;
+        request_y = y;
+        request_rotation = rotation;
+
         // How module states work is this: we have a current position, a translation that we want to do, and a rotation vector
         // that we also want to do. From there, we take our current position add the translation and rotation and using
         // inverse kinematics, it returns each module's "state", or rather what direction to rotate to and what velocity to
-        // spin at.
-        SwerveModuleState[] swerveModuleStates =
-            SwerveSettings.Swerve.swerveKinematics.toSwerveModuleStates(
-                fieldRelative ? ChassisSpeeds.fromFieldRelativeSpeeds(
-                                    translation.getX(), 
-                                    translation.getY(), 
-                                    rotation, 
-                                    getYaw()
-                                )
-                                : new ChassisSpeeds(
-                                    translation.getX(), 
-                                    translation.getY(), 
-                                    rotation)
-                                );
-
-        setModuleStates(swerveModuleStates, isOpenLoop);
-    }    
+        // spin at. The engine keeps those states in its own buffers instead of making new objects.
+        if (fieldRelative) {
+            kinematicsEngine.toModuleStatesFieldRelative(x, y, rotation, snapshot.getYawDegrees());
+        } else {
+            kinematicsEngine.toModuleStates(x, y, rotation);
+        }
+
+        applyEngineStates(isOpenLoop);
+    }
+
+    /**
+     * Desaturates, optimizes and sends whatever is currently in the kinematics engine's buffers.
+     * @param isOpenLoop Determines if it uses PID
+     */
+    private void applyEngineStates(boolean isOpenLoop) {
+        if (!devices_configured) {
+            return;
+        }
+        kinematicsEngine.desaturate(SwerveSettings.Swerve.maxSpeed);
+
+        for (SwerveModule mod : mSwerveMods) {
+            //Custom optimize command, since default WPILib optimize assumes continuous controller which CTRE is not
+            kinematicsEngine.optimize(mod.moduleNumber, snapshot.getAngleDegrees(mod.moduleNumber));
+            mod.setOptimizedState(kinematicsEngine.getSpeed(mod.moduleNumber), kinematicsEngine.getAngleDegrees(mod.moduleNumber), isOpenLoop);
+        }
+    }
 
 
     /**
@@ -179,11 +349,7 @@ public class Swerve extends SubsystemBase {
      * 
      */
     public void setModuleStates(SwerveModuleState[] desiredStates) {
-        SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, SwerveSettings.Swerve.maxSpeed);
-        
-        for(SwerveModule mod : mSwerveMods){
-            mod.setDesiredState(desiredStates[mod.moduleNumber], true);
-        }
+        setModuleStates(desiredStates, true);
     }
 
     /**
@@ -194,11 +360,9 @@ public class Swerve extends SubsystemBase {
      * 
      */
     public void setModuleStates(SwerveModuleState[] desiredStates, boolean isOpenLoop) {
-        SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, SwerveSettings.Swerve.maxSpeed);
-        
-        for(SwerveModule mod : mSwerveMods){
-            mod.setDesiredState(desiredStates[mod.moduleNumber], isOpenLoop);
-        }
+        request_mode = DriveRequestMode.MODULE_STATES;
+        kinematicsEngine.loadStates(desiredStates);
+        applyEngineStates(isOpenLoop);
     }
 
     /**
@@ -206,7 +370,22 @@ public class Swerve extends SubsystemBase {
      * @return the current pose in meters
      */
     public Pose2d getPose() {
-        return swerveOdometry.getPoseMeters();
+        if (asyncOdometry != null) {
+            return asyncOdometry.getPose();
+        }
+        return poseEstimator.getEstimatedPosition();
+    }
+
+    /**
+     * Gets where the robot was at a past moment, interpolated from the pose history. Useful for
+     * latency compensation, since a camera frame or event was captured some time before we see it.
+     * Times outside the history window are clamped to the oldest or newest pose.
+     * @param timestampSeconds FPGA timestamp, same time base as {@link Timer#getFPGATimestamp()}
+     * @return the pose at that time in meters, or the current pose if there is no history yet
+     */
+    public Pose2d getPoseAt(double timestampSeconds) {
+        Pose2d pose = poseHistory.getPose(timestampSeconds);
+        return pose != null ? pose : getPose();
     }
 
     /**
@@ -214,7 +393,15 @@ public class Swerve extends SubsystemBase {
      * @param pose Resets the robot's pose to this pose
      */
     public void resetOdometry(Pose2d pose) {
-        swerveOdometry.resetPosition(getYaw(), getModulePositions(), pose);
+        // Interpolating across a reset would give nonsense, so start the history over.
+        poseHistory.clear();
+        odometry_resets++;
+
+        if (asyncOdometry != null) {
+            asyncOdometry.resetPose(pose);
+            return;
+        }
+        poseEstimator.resetPosition(getYaw(), getModulePositions(), pose);
     }
 
     /**
@@ -229,6 +416,106 @@ public class Swerve extends SubsystemBase {
         return states;
     }
 
+    private void applyGyroStatusProfile(PigeonStatusProfile profile, int timeoutMs) {
+        gyro.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_9_SixDeg_YPR, profile.getYawPitchRollPeriod(), timeoutMs);
+        gyro.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_6_SensorFusion, profile.getSensorFusionPeriod(), timeoutMs);
+        gyro.setStatusFramePeriod(PigeonIMU_StatusFrame.CondStatus_1_General, profile.getGeneralPeriod(), timeoutMs);
+
+        PigeonIMU_StatusFrame[] unused = {
+            PigeonIMU_StatusFrame.CondStatus_2_GeneralCompass,
+            PigeonIMU_StatusFrame.CondStatus_3_GeneralAccel,
+            PigeonIMU_StatusFrame.CondStatus_10_SixDeg_Quat,
+            PigeonIMU_StatusFrame.CondStatus_11_GyroAccum,
+            PigeonIMU_StatusFrame.RawStatus_4_Mag,
+            PigeonIMU_StatusFrame.BiasedStatus_2_Gyro,
+            PigeonIMU_StatusFrame.BiasedStatus_4_Mag,
+            PigeonIMU_StatusFrame.BiasedStatus_6_Accel
+        };
+        for (PigeonIMU_StatusFrame frame : unused) {
+            gyro.setStatusFramePeriod(frame, PigeonStatusProfile.UNUSED_PERIOD, timeoutMs);
+        }
+        gyro_profile = profile;
+    }
+
+    /**
+     * Adds the gyro and every module's motors and encoder to a CAN monitor's per-device breakdown.
+     * @param monitor the {@link CANMonitor} to report to
+     */
+    public void registerCANDevices(CANMonitor monitor) {
+        monitor.addDevice("Pigeon2", () -> gyro_profile == null ? 0.0 : gyro_profile.getFramesPerSecond());
+        for (SwerveModule mod : mSwerveMods) {
+            monitor.addTalon("Mod " + mod.moduleNumber + " drive", mod.mDriveMotor);
+            monitor.addTalon("Mod " + mod.moduleNumber + " angle", mod.mAngleMotor);
+            monitor.addDevice("Mod " + mod.moduleNumber + " CANCoder", mod::getEncoderFrameRate);
+        }
+    }
+
+    /**
+     * Adds everything the drive measures and commands to the data log.
+     * @param logger the logger, before it's started
+     */
+    public void registerLogChannels(DataLogger logger) {
+        logger.addChannel("Swerve/Yaw", Encoding.DOUBLE, () -> snapshot.getYawDegrees());
+        logger.addChannel("Swerve/Pose X", Encoding.DOUBLE, () -> last_pose.getX());
+        logger.addChannel("Swerve/Pose Y", Encoding.DOUBLE, () -> last_pose.getY());
+        logger.addChannel("Swerve/Pose Rot", Encoding.DOUBLE, () -> last_pose.getRotation().getDegrees());
+        logger.addChannel("Swerve/Odometry Resets", Encoding.DELTA, 1.0, () -> odometry_resets);
+        logger.addChannel("Swerve/Request Mode", Encoding.DELTA, 1.0, () -> request_mode.ordinal());
+        logger.addChannel("Swerve/Request X", Encoding.DOUBLE, () -> request_x);
+        logger.addChannel("Swerve/Request Y", Encoding.DOUBLE, () -> request_y);
+        logger.addChannel("Swerve/Request Rot", Encoding.DOUBLE, () -> request_rotation);
+        // Replay needs to know which odometry path to redo, and where vision moved the pose.
+        logger.addChannel("Swerve/Async Odometry", Encoding.DELTA, 1.0, () -> asyncOdometry != null ? 1 : 0);
+        logger.addChannel("Swerve/Vision Applied", Encoding.DELTA, 1.0, () -> vision_applied);
+        logger.addChannel("Odometry/Samples", Encoding.DELTA, 1.0, () -> odometry_sample_count);
+        logger.addChannel("Odometry/Ring Overflows", Encoding.DELTA, 1.0, () -> asyncOdometry != null ? asyncOdometry.getRingOverflows() : 0);
+        for (int k = 0; k < odometry_samples.length; k++) {
+            double[] sample = odometry_samples[k];
+            double[] distances = odometry_distances[k];
+            double[] angles = odometry_angles[k];
+            String prefix = "Odometry " + k + "/";
+            logger.addChannel(prefix + "Time", Encoding.DOUBLE, () -> sample[AsyncOdometry.SAMPLE_TIME]);
+            logger.addChannel(prefix + "Yaw", Encoding.DOUBLE, () -> sample[AsyncOdometry.SAMPLE_YAW]);
+            logger.addChannel(prefix + "Pose X", Encoding.DOUBLE, () -> sample[AsyncOdometry.SAMPLE_POSE_X]);
+            logger.addChannel(prefix + "Pose Y", Encoding.DOUBLE, () -> sample[AsyncOdometry.SAMPLE_POSE_Y]);
+            logger.addChannel(prefix + "Pose Rot", Encoding.DOUBLE, () -> sample[AsyncOdometry.SAMPLE_POSE_ROT]);
+            logger.addChannel(prefix + "Reset", Encoding.DELTA, 1.0, () -> sample[AsyncOdometry.SAMPLE_RESET]);
+            logger.addChannel(prefix + "Vision", Encoding.DELTA, 1.0, () -> sample[AsyncOdometry.SAMPLE_VISION]);
+            for (int i = 0; i < distances.length; i++) {
+                int mod = i;
+                logger.addChannel(prefix + "Mod " + i + " Distance", Encoding.DOUBLE, () -> distances[mod]);
+                logger.addChannel(prefix + "Mod " + i + " Angle", Encoding.DOUBLE, () -> angles[mod]);
+            }
+        }
+        for (SwerveModule mod : mSwerveMods) {
+            int i = mod.moduleNumber;
+            String prefix = "Mod " + i + "/";
+            // Odometry and optimize inputs are kept at full precision so replay reproduces them exactly.
+            logger.addChannel(prefix + "Angle", Encoding.DOUBLE, () -> snapshot.getAngleDegrees(i));
+            logger.addChannel(prefix + "Speed", Encoding.DOUBLE, () -> snapshot.getVelocityMPS(i));
+            logger.addChannel(prefix + "Distance", Encoding.DOUBLE, () -> snapshot.getDistanceMeters(i));
+            logger.addChannel(prefix + "Commanded Angle", Encoding.FLOAT, mod::getCommandedAngle);
+            logger.addChannel(prefix + "Commanded Speed", Encoding.FLOAT, mod::getCommandedSpeed);
+            logger.addChannel(prefix + "Drive Amps", Encoding.FLOAT, () -> snapshot.getDriveCurrent(i));
+            logger.addChannel(prefix + "Angle Amps", Encoding.FLOAT, () -> snapshot.getAngleCurrent(i));
+            logger.addChannel(prefix + "Drive Temp", Encoding.DELTA, 0.1, () -> snapshot.getDriveTemperature(i));
+            logger.addChannel(prefix + "Angle Temp", Encoding.DELTA, 0.1, () -> snapshot.getAngleTemperature(i));
+        }
+    }
+
+    /**
+     * Switches the gyro and every module between their normal status frame rates and slow idle
+     * ones, to free up the CAN bus when nothing is being driven.
+     * @param active true for the normal profiles, false for idle
+     */
+    public void setStatusProfiles(boolean active) {
+        applyGyroStatusProfile(active ? PigeonStatusProfile.ACTIVE : PigeonStatusProfile.IDLE, 0);
+        for (SwerveModule mod : mSwerveMods) {
+            mod.setStatusProfiles(active);
+        }
+        status_frames_active = active;
+    }
+
     /**
      * Resets the gyro, used for FOC.
      */
@@ -259,7 +546,23 @@ public class Swerve extends SubsystemBase {
      * @return chassis speed in meters / second
      */
     public double getChassisSpeed() {
-        return chassis_speed;
+        return velocityEstimator.getSpeed();
+    }
+
+    /**
+     * Gets the chassis's velocity, from forward kinematics on the measured module states.
+     * @return robot relative {@link ChassisSpeeds}
+     */
+    public ChassisSpeeds getChassisSpeeds() {
+        return velocityEstimator.getChassisSpeeds();
+    }
+
+    /**
+     * Gets the chassis's acceleration, estimated alongside the velocity.
+     * @return robot relative acceleration in meters / second^2 and radians / second^2
+     */
+    public ChassisSpeeds getChassisAcceleration() {
+        return velocityEstimator.getChassisAcceleration();
     }
 
     /**
@@ -268,9 +571,17 @@ public class Swerve extends SubsystemBase {
      * @return Rotation2d representing the yaw
      */
     public Rotation2d getYaw() {
-        double[] ypr = new double[3];
-        gyro.getYawPitchRoll(ypr);
-        return (SwerveSettings.Swerve.invertGyro) ? Rotation2d.fromDegrees(360 - ypr[0]) : Rotation2d.fromDegrees(ypr[0]);
+        return Rotation2d.fromDegrees(getYawDegrees());
+    }
+
+    /**
+     * Same as {@link #getYaw()}, but as a plain double so it can be read from other threads
+     * without allocating.
+     * @return yaw in degrees
+     */
+    public double getYawDegrees() {
+        double yaw = gyro.getYaw();
+        return (SwerveSettings.Swerve.invertGyro) ? 360 - yaw : yaw;
     }
 
     /**
@@ -292,16 +603,19 @@ public class Swerve extends SubsystemBase {
      * 
      */
     public Command getSoloPathCommand(PATH_LIST traj_path, boolean is_first) {
-        PathPlannerTrajectory traj = trajectories.get(traj_path);
-        return new SequentialCommandGroup(
-            new InstantCommand(() -> {
-              // Reset odometry for the first path you run during auto
-              if(is_first){
-                  this.resetOdometry(traj.getInitialHolonomicPose());
-              }
-            }),
-            builder.followPathWithEvents(traj)
-        );
+        // Built when it starts, so the trajectory is only loaded if this command actually runs.
+        return new PathCommand(() -> {
+            PathPlannerTrajectory traj = trajectories.get(traj_path);
+            return new SequentialCommandGroup(
+                new InstantCommand(() -> {
+                  // Reset odometry for the first path you run during auto
+                  if(is_first){
+                      this.resetOdometry(traj.getInitialHolonomicPose());
+                  }
+                }),
+                builder.followPathWithEvents(traj)
+            );
+        }, traj_path);
     }
 
     /**
@@ -310,7 +624,7 @@ public class Swerve extends SubsystemBase {
      * @return the usable {@link Command} 
      */
     public Command getSoloPathCommand(PATH_LIST path) {
-        return builder.followPathWithEvents(trajectories.get(path));
+        return new PathCommand(() -> builder.followPathWithEvents(trajectories.get(path)), path);
     }
 
     /**
@@ -320,37 +634,83 @@ public class Swerve extends SubsystemBase {
      * @return the usable {@link Command}
      */
     public Command getFullAutoPath(PATH_LIST... traj) {
-        ArrayList<PathPlannerTrajectory> paths = new ArrayList<PathPlannerTrajectory>();
-        for (int i = 0; i < traj.length; i++) {
-            paths.add(trajectories.get(traj[i]));
-        } 
-
-        SequentialCommandGroup sequential = new SequentialCommandGroup(
-            new InstantCommand(() -> this.resetOdometry(paths.get(0).getInitialHolonomicPose())),
-            builder.fullAuto(paths)
-        );
+        return new PathCommand(() -> {
+            ArrayList<PathPlannerTrajectory> paths = new ArrayList<PathPlannerTrajectory>();
+            for (int i = 0; i < traj.length; i++) {
+                paths.add(trajectories.get(traj[i]));
+            } 
+
+            SequentialCommandGroup sequential = new SequentialCommandGroup(
+                new InstantCommand(() -> this.resetOdometry(paths.get(0).getInitialHolonomicPose())),
+                builder.fullAuto(paths)
+            );
+
+            return sequential;
+        }, traj);
+    }
+
+    /**
+     * Starts loading paths in the background so they're ready before a path command needs them.
+     * @param paths the {@link PATH_LIST} trajectories about to be used
+     */
+    public void prefetchPaths(PATH_LIST... paths) {
+        trajectories.prefetch(paths);
+    }
 
-        return sequential;
+    private void fillModuleTelemetry() {
+        for (SwerveModule mod : mSwerveMods) {
+            int base = mod.moduleNumber * 4;
+            module_telemetry[base] = snapshot.getAngleDegrees(mod.moduleNumber);
+            module_telemetry[base + 1] = snapshot.getVelocityMPS(mod.moduleNumber);
+            module_telemetry[base + 2] = snapshot.getDriveCurrent(mod.moduleNumber);
+            module_telemetry[base + 3] = snapshot.getDriveTemperature(mod.moduleNumber);
+        }
     }
 
     @Override
     public void periodic() {
-        // Grabs the previous post of the robot, before the update.
-        Pose2d previous_pose = swerveOdometry.getPoseMeters();
-        swerveOdometry.update(getYaw(), getModulePositions());
+        long profile_start = LoopProfiler.start();
+
+        // Sense: periodic() runs before any command's execute() in the same scheduler pass, so
+        // capturing here means teleop, auto and telemetry all see this tick's values.
+        double now = Timer.getFPGATimestamp();
+        snapshot.capture(now, getYawDegrees(), mSwerveMods);
+        request_mode = DriveRequestMode.NONE;
+
+        // The async sampler integrates on its own, otherwise we do it once per loop here.
+        if (asyncOdometry == null) {
+            poseEstimator.updateWithTime(now, Rotation2d.fromDegrees(snapshot.getYawDegrees()), snapshot.copyModulePositions(module_positions));
+            if (visionFusion != null) {
+                vision_applied += visionFusion.applyPending(poseEstimator);
+            }
+        } else {
+            // Anything past the log's slots stays in the ring for the next loop.
+            odometry_sample_count = 0;
+            while (odometry_sample_count < odometry_samples.length
+                && asyncOdometry.pollSample(odometry_distances[odometry_sample_count], odometry_angles[odometry_sample_count], odometry_samples[odometry_sample_count])) {
+                odometry_sample_count++;
+            }
+        }
 
         // Grabs the new pose of the robot, after the update.
-        Pose2d current_pose = swerveOdometry.getPoseMeters();
-
-        // Grabs the current time of the system
-        Instant now = Instant.now();
-        // Determines how much time has passed.
-        double elapsed_time = ((double)Duration.between(last_instant, now).getNano());
-        // Does some math to essentially get the distance between the translation, and then divide it by
-        // the elapsed time. Since getNano() nanoseconds, to get it to seconds we need to divide by 1e9.
-        chassis_speed = Math.abs(current_pose.getTranslation().getDistance(previous_pose.getTranslation())) / (elapsed_time / 1e9);
-
-        // sets the last instance to now for the next iteration of periodic.
-        last_instant = now;
+        Pose2d current_pose = getPose();
+        last_pose = current_pose;
+        poseHistory.addSample(now, current_pose);
+
+        // Forward kinematics on what the modules are actually doing gives us the chassis velocity,
+        // which is much less noisy than differencing poses.
+        for (SwerveModule mod : mSwerveMods) {
+            module_speeds[mod.moduleNumber] = snapshot.getVelocityMPS(mod.moduleNumber);
+            module_angles[mod.moduleNumber] = snapshot.getAngleDegrees(mod.moduleNumber);
+        }
+        velocityEstimator.update(now, module_speeds, module_angles);
+
+        // Nobody needs fast frames while disabled, slow the whole drive down until we're enabled again.
+        boolean enabled = DriverStation.isEnabled();
+        if (status_frames_active == null || status_frames_active != enabled) {
+            setStatusProfiles(enabled);
+        }
+
+        LoopProfiler.stop(PERIODIC_PROFILE, profile_start);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package frc.swervelib.math;
+
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * Estimates robot relative chassis velocity and acceleration from measured module states.<p>
+ * Each loop the module velocities go through forward kinematics, and the result is smoothed with
+ * an alpha-beta filter per axis (vx, vy, omega). Alpha sets how much of a new measurement is
+ * trusted for velocity, beta how fast the acceleration estimate reacts. Time comes from the
+ * caller, which should be the FPGA clock.
+ */
+public class ChassisVelocityEstimator {
+    private final SwerveKinematicsEngine kinematics;
+    private final double alpha;
+    private final double beta;
+
+    private final double[] measured = new double[3];
+    private final double[] velocity = new double[3];
+    private final double[] acceleration = new double[3];
+    private double last_timestamp = Double.NaN;
+
+    /**
+     * @param kinematics the engine used for forward kinematics
+     * @param alpha velocity gain, between 0 (never update) and 1 (no filtering)
+     * @param beta acceleration gain, between 0 and 2, usually much smaller than alpha
+     */
+    public ChassisVelocityEstimator(SwerveKinematicsEngine kinematics, double alpha, double beta) {
+        this.kinematics = kinematics;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     * Feeds in one set of measurements.
+     * @param timestamp FPGA timestamp in seconds
+     * @param module_speeds each module's measured speed in meters / second
+     * @param module_angles each module's measured angle in degrees
+     */
+    public void update(double timestamp, double[] module_speeds, double[] module_angles) {
+        kinematics.toChassisSpeeds(module_speeds, module_angles, measured);
+
+        if (Double.isNaN(last_timestamp)) {
+            // Nothing to filter against yet, take the first measurement as is.
+            for (int i = 0; i < 3; i++) {
+                velocity[i] = measured[i];
+                acceleration[i] = 0;
+            }
+            last_timestamp = timestamp;
+            return;
+        }
+
+        double dt = timestamp - last_timestamp;
+        if (dt <= 0) {
+            return;
+        }
+        last_timestamp = timestamp;
+
+        for (int i = 0; i < 3; i++) {
+            double predicted = velocity[i] + acceleration[i] * dt;
+            double residual = measured[i] - predicted;
+            velocity[i] = predicted + alpha * residual;
+            acceleration[i] = acceleration[i] + beta * residual / dt;
+        }
+    }
+
+    /**
+     * @return filtered forward velocity in meters / second
+     */
+    public double getVx() {
+        return velocity[0];
+    }
+
+    /**
+     * @return filtered left velocity in meters / second
+     */
+    public double getVy() {
+        return velocity[1];
+    }
+
+    /**
+     * @return filtered CCW angular velocity in radians / second
+     */
+    public double getOmega() {
+        return velocity[2];
+    }
+
+    /**
+     * @return filtered translational speed in meters / second
+     */
+    public double getSpeed() {
+        return Math.hypot(velocity[0], velocity[1]);
+    }
+
+    /**
+     * @return filtered robot relative velocity
+     */
+    public ChassisSpeeds getChassisSpeeds() {
+        return new ChassisSpeeds(velocity[0], velocity[1], velocity[2]);
+    }
+
+    /**
+     * @return filtered robot relative acceleration, in meters / second^2 and radians / second^2
+     */
+    public ChassisSpeeds getChassisAcceleration() {
+        return new ChassisSpeeds(acceleration[0], acceleration[1], acceleration[2]);
+    }
+
+    /**
+     * Forgets the filter state, the next update starts fresh.
+     */
+    public void reset() {
+        last_timestamp = Double.NaN;
+    }
+}
@@ -43,6 +43,16 @@ public class Conversions {
         return sensorCounts;
     }
 
+    /**
+     * @param positionCounts Falcon Position Counts
+     * @param circumference Circumference of Wheel
+     * @param gearRatio Gear Ratio between Falcon and Wheel
+     * @return Meters
+     */
+    public static double falconToMeters(double positionCounts, double circumference, double gearRatio){
+        return positionCounts * (circumference / (gearRatio * 2048.0));
+    }
+
     /**
      * @param velocitycounts Falcon Velocity Counts
      * @param circumference Circumference of Wheel
@@ -0,0 +1,221 @@
+package frc.swervelib.math;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.swervelib.util.CTREModuleState;
+
+/**
+ * Allocation free replacement for the parts of {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics}
+ * that run every loop.<p>
+ * Everything works on preallocated {@code double[]} buffers, one slot per module, so a full
+ * drive tick (field relative rotation, inverse kinematics, desaturation and module optimization)
+ * makes no garbage. Results match WPILib's within floating point tolerance, including holding
+ * each module's last heading when the chassis is commanded to stop.<p>
+ * Not thread safe, keep it on the main loop.
+ */
+public class SwerveKinematicsEngine {
+    private final int module_count;
+    private final double[] module_x;
+    private final double[] module_y;
+
+    private final double[] speeds;
+    private final double[] angles;
+    private final double[] optimize_out = new double[2];
+
+    // Least squares forward kinematics, [row * (module_count * 2) + column], rows are vx, vy, omega.
+    private final double[] forward_matrix;
+
+    /**
+     * @param module_locations The location of each module relative to the center of the robot,
+     * in the same order given to {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics}
+     */
+    public SwerveKinematicsEngine(Translation2d... module_locations) {
+        this.module_count = module_locations.length;
+        this.module_x = new double[module_count];
+        this.module_y = new double[module_count];
+        this.speeds = new double[module_count];
+        this.angles = new double[module_count];
+
+        for (int i = 0; i < module_count; i++) {
+            module_x[i] = module_locations[i].getX();
+            module_y[i] = module_locations[i].getY();
+        }
+
+        this.forward_matrix = buildForwardMatrix();
+    }
+
+    /**
+     * Inverse kinematics is A * [vx, vy, omega] where each module adds the rows [1, 0, -y] and
+     * [0, 1, x]. Forward kinematics is the pseudo inverse (A^T A)^-1 A^T, which only depends on the
+     * module layout, so it's worked out once here.
+     */
+    private double[] buildForwardMatrix() {
+        double sum_x = 0, sum_y = 0, sum_r2 = 0;
+        for (int i = 0; i < module_count; i++) {
+            sum_x += module_x[i];
+            sum_y += module_y[i];
+            sum_r2 += module_x[i] * module_x[i] + module_y[i] * module_y[i];
+        }
+
+        // A^T A, symmetric 3x3
+        double n = module_count;
+        double a = n, b = 0, c = -sum_y;
+        double d = n, e = sum_x;
+        double f = sum_r2;
+
+        // Its inverse, by cofactors.
+        double c00 = d * f - e * e;
+        double c01 = -(b * f - c * e);
+        double c02 = b * e - c * d;
+        double c11 = a * f - c * c;
+        double c12 = -(a * e - b * c);
+        double c22 = a * d - b * b;
+        double det = a * c00 + b * c01 + c * c02;
+        double[][] inverse = {
+            {c00 / det, c01 / det, c02 / det},
+            {c01 / det, c11 / det, c12 / det},
+            {c02 / det, c12 / det, c22 / det}
+        };
+
+        int columns = module_count * 2;
+        double[] matrix = new double[3 * columns];
+        for (int row = 0; row < 3; row++) {
+            for (int i = 0; i < module_count; i++) {
+                // Column for the module's vx is A^T's [1, 0, -y], for vy it's [0, 1, x].
+                matrix[row * columns + i * 2] = inverse[row][0] - inverse[row][2] * module_y[i];
+                matrix[row * columns + i * 2 + 1] = inverse[row][1] + inverse[row][2] * module_x[i];
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Inverse kinematics for robot relative speeds. Results are read back with {@link #getSpeed(int)}
+     * and {@link #getAngleDegrees(int)}.
+     * @param vx forward velocity in meters / second
+     * @param vy left velocity in meters / second
+     * @param omega CCW angular velocity in radians / second
+     */
+    public void toModuleStates(double vx, double vy, double omega) {
+        // WPILib keeps the previous headings when told to stop, so the wheels don't snap back to zero.
+        if (vx == 0.0 && vy == 0.0 && omega == 0.0) {
+            for (int i = 0; i < module_count; i++) {
+                speeds[i] = 0.0;
+            }
+            return;
+        }
+
+        for (int i = 0; i < module_count; i++) {
+            double module_vx = vx - omega * module_y[i];
+            double module_vy = vy + omega * module_x[i];
+            double speed = Math.hypot(module_vx, module_vy);
+
+            speeds[i] = speed;
+            // Rotation2d treats anything this small as zero degrees.
+            angles[i] = speed > 1e-6 ? Math.toDegrees(Math.atan2(module_vy, module_vx)) : 0.0;
+        }
+    }
+
+    /**
+     * Inverse kinematics for field relative speeds. Same as {@link #toModuleStates(double, double, double)}
+     * after rotating the request into the robot's frame.
+     * @param vx field forward velocity in meters / second
+     * @param vy field left velocity in meters / second
+     * @param omega CCW angular velocity in radians / second
+     * @param yaw_degrees the robot's heading in degrees
+     */
+    public void toModuleStatesFieldRelative(double vx, double vy, double omega, double yaw_degrees) {
+        double radians = Math.toRadians(yaw_degrees);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+
+        toModuleStates(vx * cos + vy * sin, -vx * sin + vy * cos, omega);
+    }
+
+    /**
+     * Copies already computed states (from a path follower, for example) into the buffers.
+     * @param states one state per module
+     */
+    public void loadStates(SwerveModuleState[] states) {
+        for (int i = 0; i < module_count; i++) {
+            speeds[i] = states[i].speedMetersPerSecond;
+            angles[i] = states[i].angle.getDegrees();
+        }
+    }
+
+    /**
+     * Scales every module down evenly if any of them would go faster than allowed.
+     * @param max_speed attainable max speed of a module in meters / second
+     */
+    public void desaturate(double max_speed) {
+        double real_max = 0.0;
+        for (int i = 0; i < module_count; i++) {
+            real_max = Math.max(real_max, Math.abs(speeds[i]));
+        }
+
+        if (real_max > max_speed) {
+            for (int i = 0; i < module_count; i++) {
+                speeds[i] = speeds[i] / real_max * max_speed;
+            }
+        }
+    }
+
+    /**
+     * Runs {@link CTREModuleState} optimization on one module's buffered state.
+     * @param module the module number
+     * @param current_angle_degrees the module's current (continuous) angle in degrees
+     */
+    public void optimize(int module, double current_angle_degrees) {
+        CTREModuleState.optimize(speeds[module], angles[module], current_angle_degrees, optimize_out);
+        speeds[module] = optimize_out[0];
+        angles[module] = optimize_out[1];
+    }
+
+    /**
+     * Forward kinematics, the best fit chassis motion for measured module states. Same result as
+     * {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics#toChassisSpeeds}, without allocating.
+     * @param module_speeds each module's measured speed in meters / second
+     * @param module_angles each module's measured angle in degrees
+     * @param out Filled with {vx meters / second, vy meters / second, omega radians / second}
+     */
+    public void toChassisSpeeds(double[] module_speeds, double[] module_angles, double[] out) {
+        int columns = module_count * 2;
+        out[0] = 0;
+        out[1] = 0;
+        out[2] = 0;
+
+        for (int i = 0; i < module_count; i++) {
+            double radians = Math.toRadians(module_angles[i]);
+            double module_vx = module_speeds[i] * Math.cos(radians);
+            double module_vy = module_speeds[i] * Math.sin(radians);
+
+            for (int row = 0; row < 3; row++) {
+                out[row] += forward_matrix[row * columns + i * 2] * module_vx
+                          + forward_matrix[row * columns + i * 2 + 1] * module_vy;
+            }
+        }
+    }
+
+    /**
+     * @param module the module number
+     * @return the buffered module speed in meters / second
+     */
+    public double getSpeed(int module) {
+        return speeds[module];
+    }
+
+    /**
+     * @param module the module number
+     * @return the buffered module angle in degrees
+     */
+    public double getAngleDegrees(int module) {
+        return angles[module];
+    }
+
+    /**
+     * @return how many modules this engine was built for
+     */
+    public int getModuleCount() {
+        return module_count;
+    }
+}
@@ -0,0 +1,286 @@
+package frc.swervelib.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.bd_util.BDManager;
+import frc.bd_util.BDUpdatable;
+import frc.bd_util.UpdateRate;
+
+/**
+ * Samples the gyro and every swerve module on its own {@link Notifier} thread, much faster than
+ * the 20ms scheduler loop, and integrates odometry off the main thread. Vision measurements, if
+ * any, are applied on this thread too, since it owns the estimator.<p>
+ * Each sample is stamped with FPGA time and written into a single-producer, single-consumer ring
+ * buffer along with the pose it produced, so one consumer ({@link frc.robot.subsystems.Swerve},
+ * for the data logger) can take the raw samples without taking a lock, and log replay can redo
+ * every sample and check its pose. The
+ * sampler never overwrites a sample that hasn't been taken, if the ring is full the sample is left
+ * out of it and counted. {@link #getPose()} never blocks, it just hands back the last pose the
+ * sampler published.<p>
+ * Sampling reuses preallocated module positions, and only makes a new {@link Rotation2d} when an
+ * angle actually changed.
+ */
+public class AsyncOdometry implements BDUpdatable {
+    // Number of samples held in the ring buffer. Must be a power of two so we can mask the index.
+    private static final int CAPACITY = 256;
+    private static final int MASK = CAPACITY - 1;
+
+    // Layout of the out array filled by pollSample().
+    public static final int SAMPLE_TIME = 0;
+    public static final int SAMPLE_YAW = 1;
+    public static final int SAMPLE_POSE_X = 2;
+    public static final int SAMPLE_POSE_Y = 3;
+    public static final int SAMPLE_POSE_ROT = 4;
+    // 1 if this sample applied a resetPose() instead of integrating.
+    public static final int SAMPLE_RESET = 5;
+    // Vision measurements applied after integrating this sample.
+    public static final int SAMPLE_VISION = 6;
+    public static final int SAMPLE_FIELDS = 7;
+
+    private final SwerveDrivePoseEstimator odometry;
+    private VisionPoseFusion vision;
+    private final SwerveModule[] modules;
+    private final DoubleSupplier yaw_supplier;
+    private final Notifier notifier;
+    private final long period_micros;
+
+    // Ring buffer. Values are stored flat, [sample * SAMPLE_FIELDS + field] and [sample * module_count + module].
+    private final double[] sample_fields = new double[CAPACITY * SAMPLE_FIELDS];
+    private final double[] sample_distances;
+    private final double[] sample_angles;
+    // write_sequence is only written by the sampler, read_sequence only by the consumer. Slots between them are full.
+    private final AtomicLong write_sequence = new AtomicLong(0);
+    private final AtomicLong read_sequence = new AtomicLong(0);
+    private final AtomicLong ring_overflows = new AtomicLong(0);
+
+    // Only touched by the sampler thread.
+    private final SwerveModulePosition[] positions;
+    private double last_yaw = Double.NaN;
+    private Rotation2d yaw_rotation = new Rotation2d();
+    private long last_sample_micros = 0;
+
+    private final AtomicReference<Pose2d> pending_reset = new AtomicReference<Pose2d>();
+    private final AtomicReference<Pose2d> latest_pose;
+
+    private volatile double average_jitter_ms = 0.0;
+    private volatile double max_jitter_ms = 0.0;
+    private final AtomicLong dropped_samples = new AtomicLong(0);
+
+    /**
+     * Creates the sampler. It does not run until {@link #start()} is called.
+     * @param odometry The pose estimator to integrate into. Once started, only the sampler thread touches it.
+     * @param yaw_supplier Supplies the gyro yaw in degrees, CCW+.
+     * @param modules The swerve modules, indexed by module number.
+     * @param frequency How many times a second to sample, in hertz.
+     */
+    public AsyncOdometry(SwerveDrivePoseEstimator odometry, DoubleSupplier yaw_supplier, SwerveModule[] modules, double frequency) {
+        this.odometry = odometry;
+        this.yaw_supplier = yaw_supplier;
+        this.modules = modules;
+        this.period_micros = (long) (1e6 / frequency);
+
+        this.sample_distances = new double[CAPACITY * modules.length];
+        this.sample_angles = new double[CAPACITY * modules.length];
+        this.positions = new SwerveModulePosition[modules.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new SwerveModulePosition();
+        }
+
+        this.latest_pose = new AtomicReference<Pose2d>(odometry.getEstimatedPosition());
+        this.notifier = new Notifier(this::sample);
+        notifier.setName("AsyncOdometry");
+
+        BDManager.getInstance().register(this);
+    }
+
+    /**
+     * Hands vision measurements to the sampler thread. Must be called before {@link #start()}.
+     * @param vision the fusion to drain every sample
+     */
+    public void setVisionFusion(VisionPoseFusion vision) {
+        this.vision = vision;
+    }
+
+    /**
+     * Starts sampling at the configured frequency.
+     */
+    public void start() {
+        last_sample_micros = 0;
+        notifier.startPeriodic(period_micros / 1e6);
+    }
+
+    /**
+     * Stops sampling. The last integrated pose is still available from {@link #getPose()}.
+     */
+    public void stop() {
+        notifier.stop();
+    }
+
+    /**
+     * One sample: read the sensors, push them into the ring buffer, integrate.
+     */
+    private void sample() {
+        long now = RobotController.getFPGATime();
+        // A reset that lands while this sample is running replaces this pose, see the end.
+        Pose2d published = latest_pose.get();
+
+        double yaw = yaw_supplier.getAsDouble();
+        if (yaw != last_yaw) {
+            yaw_rotation = Rotation2d.fromDegrees(yaw);
+            last_yaw = yaw;
+        }
+        for (SwerveModule mod : modules) {
+            mod.samplePosition(positions[mod.moduleNumber]);
+        }
+
+        Pose2d reset = pending_reset.getAndSet(null);
+        int vision_applied = 0;
+        if (reset != null) {
+            odometry.resetPosition(yaw_rotation, positions, reset);
+        } else {
+            odometry.updateWithTime(now / 1e6, yaw_rotation, positions);
+            if (vision != null) {
+                vision_applied = vision.applyPending(odometry);
+            }
+        }
+        Pose2d pose = odometry.getEstimatedPosition();
+        // If resetPose() ran since the start of this sample it already published the reset pose,
+        // and the next sample applies it. Don't put the pre-reset estimate back over it.
+        latest_pose.compareAndSet(published, pose);
+
+        // Write the sample first, then publish the new sequence so the consumer never sees a half
+        // written slot. Slots the consumer hasn't taken yet are never touched.
+        long sequence = write_sequence.get();
+        if (sequence - read_sequence.get() < CAPACITY) {
+            int slot = (int) (sequence & MASK);
+            int base = slot * SAMPLE_FIELDS;
+            sample_fields[base + SAMPLE_TIME] = now / 1e6;
+            sample_fields[base + SAMPLE_YAW] = yaw;
+            sample_fields[base + SAMPLE_POSE_X] = pose.getX();
+            sample_fields[base + SAMPLE_POSE_Y] = pose.getY();
+            sample_fields[base + SAMPLE_POSE_ROT] = pose.getRotation().getDegrees();
+            sample_fields[base + SAMPLE_RESET] = reset != null ? 1 : 0;
+            sample_fields[base + SAMPLE_VISION] = vision_applied;
+            for (int i = 0; i < positions.length; i++) {
+                sample_distances[slot * positions.length + i] = positions[i].distanceMeters;
+                sample_angles[slot * positions.length + i] = modules[i].getSampledAngleDegrees();
+            }
+            write_sequence.lazySet(sequence + 1);
+        } else {
+            ring_overflows.incrementAndGet();
+        }
+
+        recordTiming(now);
+    }
+
+    private void recordTiming(long now) {
+        if (last_sample_micros != 0) {
+            long elapsed = now - last_sample_micros;
+            double jitter_ms = Math.abs(elapsed - period_micros) / 1000.0;
+
+            // Light exponential average so one bad sample doesn't hide the trend.
+            average_jitter_ms = average_jitter_ms * 0.95 + jitter_ms * 0.05;
+            max_jitter_ms = Math.max(max_jitter_ms, jitter_ms);
+
+            // Anything past one and a half periods means we skipped at least one slot.
+            if (elapsed > period_micros * 3 / 2) {
+                dropped_samples.addAndGet(Math.round((double) elapsed / period_micros) - 1);
+            }
+        }
+        last_sample_micros = now;
+    }
+
+    /**
+     * @return The latest integrated pose. Never blocks.
+     */
+    public Pose2d getPose() {
+        return latest_pose.get();
+    }
+
+    /**
+     * Requests an odometry reset. The sampler applies it on its next sample with fresh sensor
+     * readings, but {@link #getPose()} reports the new pose right away.
+     * @param pose The pose to reset to
+     */
+    public void resetPose(Pose2d pose) {
+        pending_reset.set(pose);
+        latest_pose.set(pose);
+    }
+
+    /**
+     * Takes the oldest sample out of the ring buffer, without locking. Only one thread may consume.
+     * @param distances Filled with each module's distance in meters, indexed by module number
+     * @param angles Filled with each module's angle in degrees, indexed by module number
+     * @param out Filled with {@link #SAMPLE_FIELDS} values, laid out by the SAMPLE_ constants
+     * @return false if there are no samples waiting
+     */
+    public boolean pollSample(double[] distances, double[] angles, double[] out) {
+        long sequence = read_sequence.get();
+        if (sequence == write_sequence.get()) {
+            return false;
+        }
+
+        int slot = (int) (sequence & MASK);
+        System.arraycopy(sample_fields, slot * SAMPLE_FIELDS, out, 0, SAMPLE_FIELDS);
+        for (int i = 0; i < positions.length; i++) {
+            distances[i] = sample_distances[slot * positions.length + i];
+            angles[i] = sample_angles[slot * positions.length + i];
+        }
+        // Ordered store, the sampler can't reuse the slot until the copy above is done.
+        read_sequence.lazySet(sequence + 1);
+        return true;
+    }
+
+    /**
+     * @return Samples left out of the ring buffer because the consumer fell behind.
+     */
+    public long getRingOverflows() {
+        return ring_overflows.get();
+    }
+
+    /**
+     * @return Average distance from the ideal sample period, in milliseconds.
+     */
+    public double getAverageJitterMs() {
+        return average_jitter_ms;
+    }
+
+    /**
+     * @return Worst distance from the ideal sample period seen since start, in milliseconds.
+     */
+    public double getMaxJitterMs() {
+        return max_jitter_ms;
+    }
+
+    /**
+     * @return How many sample periods were skipped entirely since start.
+     */
+    public long getDroppedSamples() {
+        return dropped_samples.get();
+    }
+
+    public void update() {
+
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.ONE_HZ;
+    }
+
+    public String getID() {
+        return "AsyncOdometry";
+    }
+
+    public String getStatus() {
+        long dropped = getDroppedSamples();
+        return dropped == 0 ? "OK" : "Dropped " + dropped + " samples";
+    }
+}
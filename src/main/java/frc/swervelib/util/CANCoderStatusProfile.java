@@ -0,0 +1,34 @@
+package frc.swervelib.util;
+
+/**
+ * Status frame period profiles for the swerve module CANCoders, in milliseconds.<p>
+ * After boot the absolute angle is only used to seed the steering motor and for testing
+ * telemetry, so even the active profile can be slow.
+ */
+public enum CANCoderStatusProfile {
+    ACTIVE(100, 255),
+    IDLE(255, 255);
+
+    private int sensor_data;
+    private int vbat_and_faults;
+
+    private CANCoderStatusProfile(int sensor_data, int vbat_and_faults) {
+        this.sensor_data = sensor_data;
+        this.vbat_and_faults = vbat_and_faults;
+    }
+
+    public int getSensorDataPeriod() {
+        return sensor_data;
+    }
+
+    public int getVbatAndFaultsPeriod() {
+        return vbat_and_faults;
+    }
+
+    /**
+     * @return Roughly how many CAN frames per second one CANCoder on this profile sends.
+     */
+    public double getFramesPerSecond() {
+        return 1000.0 / sensor_data + 1000.0 / vbat_and_faults;
+    }
+}
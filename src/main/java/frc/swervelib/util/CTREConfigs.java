@@ -8,6 +8,7 @@ import com.ctre.phoenix.sensors.SensorInitializationStrategy;
 import com.ctre.phoenix.sensors.SensorTimeBase;
 
 import edu.wpi.first.math.util.Units;
+import frc.bd_util.custom_talon.StatusFrameProfile;
 import frc.bd_util.custom_talon.TalonFXWConfig;
 
 public final class CTREConfigs {
@@ -37,8 +38,10 @@ public final class CTREConfigs {
         swerveAngleFXConfig.supplyCurrLimit = angleSupplyLimit;
         swerveAngleFXConfig.initializationStrategy = SensorInitializationStrategy.BootToZero;
 
-        angleFXWConfig = new TalonFXWConfig(SwerveSettings.Swerve.angleGearRatio, Units.metersToInches(SwerveSettings.Swerve.wheelDiameter));
-        driveFXWConfig = new TalonFXWConfig(SwerveSettings.Swerve.driveGearRatio, Units.metersToInches(SwerveSettings.Swerve.wheelDiameter));
+        angleFXWConfig = new TalonFXWConfig(SwerveSettings.Swerve.angleGearRatio, Units.metersToInches(SwerveSettings.Swerve.wheelDiameter))
+            .withStatusProfile(StatusFrameProfile.STEER);
+        driveFXWConfig = new TalonFXWConfig(SwerveSettings.Swerve.driveGearRatio, Units.metersToInches(SwerveSettings.Swerve.wheelDiameter))
+            .withStatusProfile(StatusFrameProfile.DRIVE);
 
         /* Swerve Drive Motor Configuration */
         SupplyCurrentLimitConfiguration driveSupplyLimit = new SupplyCurrentLimitConfiguration(
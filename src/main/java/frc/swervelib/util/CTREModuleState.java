@@ -14,14 +14,29 @@ public class CTREModuleState {
    * @param currentAngle The current module angle.
    */
   public static SwerveModuleState optimize(SwerveModuleState desiredState, Rotation2d currentAngle) {
-    double targetAngle = placeInAppropriate0To360Scope(currentAngle.getDegrees(), desiredState.angle.getDegrees());
-    double targetSpeed = desiredState.speedMetersPerSecond;
-    double delta = targetAngle - currentAngle.getDegrees();
+    double[] out = new double[2];
+    optimize(desiredState.speedMetersPerSecond, desiredState.angle.getDegrees(), currentAngle.getDegrees(), out);
+    return new SwerveModuleState(out[0], Rotation2d.fromDegrees(out[1]));
+  }
+
+  /**
+   * Allocation free version of {@link #optimize(SwerveModuleState, Rotation2d)}.
+   *
+   * @param speed The desired speed in meters / second.
+   * @param desiredAngle The desired angle in degrees.
+   * @param currentAngle The current module angle in degrees.
+   * @param out Filled with {optimized speed, optimized angle in degrees}.
+   */
+  public static void optimize(double speed, double desiredAngle, double currentAngle, double[] out) {
+    double targetAngle = placeInAppropriate0To360Scope(currentAngle, desiredAngle);
+    double targetSpeed = speed;
+    double delta = targetAngle - currentAngle;
     if (Math.abs(delta) > 90){
         targetSpeed = -targetSpeed;
         targetAngle = delta > 90 ? (targetAngle -= 180) : (targetAngle += 180);
-    }        
-    return new SwerveModuleState(targetSpeed, Rotation2d.fromDegrees(targetAngle));
+    }
+    out[0] = targetSpeed;
+    out[1] = targetAngle;
   }
 
   /**
@@ -0,0 +1,26 @@
+package frc.swervelib.util;
+
+/**
+ * How the drive was commanded in a loop. Logged as the ordinal so log replay can recompute the
+ * module commands from the same request.
+ */
+public enum DriveRequestMode {
+    /** Nothing called drive this loop, the modules hold their last command. */
+    NONE,
+    /** {@code drive()} with robot relative speeds. */
+    ROBOT_RELATIVE,
+    /** {@code drive()} with field relative speeds. */
+    FIELD_RELATIVE,
+    /** {@code setModuleStates()}, the states themselves aren't logged so replay can't recompute these. */
+    MODULE_STATES;
+
+    private static final DriveRequestMode[] values = values();
+
+    /**
+     * @param ordinal a logged ordinal
+     * @return the mode, NONE if it's out of range
+     */
+    public static DriveRequestMode fromOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < values.length ? values[ordinal] : NONE;
+    }
+}
@@ -0,0 +1,87 @@
+package frc.swervelib.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import frc.bd_util.logging.DataLogReader;
+
+/**
+ * Stands in for the gyro and swerve CAN devices during log replay. Every {@link #next()} loads
+ * the next recorded loop into a {@link SwerveSensorSnapshot}, the same object the drive code
+ * reads from on the robot.<p>
+ * Besides the sensors, any other logged channels can be asked for by name and read alongside.
+ */
+public class LogSensorSource {
+    private final DataLogReader.Cursor cursor;
+    private final SwerveSensorSnapshot snapshot;
+    private final int module_count;
+    // Cursor columns: yaw, then angle, speed, distance for each module, then the extras.
+    private final int extra_start;
+
+    /**
+     * @param reader an open log
+     * @param snapshot filled on every {@link #next()}
+     * @param extra other channels to read, in the order {@link #get(int)} indexes them
+     * @throws IOException if the log is missing any sensor or extra channel
+     */
+    public LogSensorSource(DataLogReader reader, SwerveSensorSnapshot snapshot, String... extra) throws IOException {
+        this.snapshot = snapshot;
+        this.module_count = snapshot.getModuleCount();
+
+        ArrayList<String> names = new ArrayList<String>();
+        names.add("Swerve/Yaw");
+        for (int i = 0; i < module_count; i++) {
+            names.add("Mod " + i + "/Angle");
+            names.add("Mod " + i + "/Speed");
+            names.add("Mod " + i + "/Distance");
+        }
+        extra_start = names.size();
+        for (String name : extra) {
+            names.add(name);
+        }
+
+        int[] channels = new int[names.size()];
+        ArrayList<String> missing = new ArrayList<String>();
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = reader.getChannel(names.get(i));
+            if (channels[i] < 0) {
+                missing.add(names.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IOException("Log is missing channels " + missing);
+        }
+        cursor = reader.cursor(0, channels);
+    }
+
+    /**
+     * Loads the next recorded loop into the snapshot.
+     * @return false once the log is used up
+     */
+    public boolean next() {
+        if (!cursor.next()) {
+            return false;
+        }
+        snapshot.loadGyro(getTimestamp(), cursor.get(0));
+        for (int i = 0; i < module_count; i++) {
+            int column = 1 + i * 3;
+            snapshot.loadModule(i, cursor.get(column), cursor.get(column + 1), cursor.get(column + 2));
+        }
+        return true;
+    }
+
+    /**
+     * @return FPGA timestamp of the current loop, in seconds
+     */
+    public double getTimestamp() {
+        return cursor.getTimestamp() / 1e6;
+    }
+
+    /**
+     * @param extra position in the extra channel list
+     * @return that channel's value in the current loop
+     */
+    public double get(int extra) {
+        return cursor.get(extra_start + extra);
+    }
+}
@@ -0,0 +1,28 @@
+package frc.swervelib.util;
+
+import java.util.function.Supplier;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.ProxyCommand;
+import frc.swervelib.util.SwerveSettings.PATH_LIST;
+
+/**
+ * A path following command, built when it starts so its trajectories are only loaded if it
+ * actually runs. Remembers which paths it uses so they can be prefetched, see {@link UsesPaths}.
+ */
+public class PathCommand extends ProxyCommand implements UsesPaths {
+    private final PATH_LIST[] paths;
+
+    /**
+     * @param supplier builds the path following command when this one starts
+     * @param paths the paths the built command will run
+     */
+    public PathCommand(Supplier<Command> supplier, PATH_LIST... paths) {
+        super(supplier);
+        this.paths = paths.clone();
+    }
+
+    public PATH_LIST[] getPaths() {
+        return paths.clone();
+    }
+}
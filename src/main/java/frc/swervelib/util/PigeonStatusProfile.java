@@ -0,0 +1,44 @@
+package frc.swervelib.util;
+
+/**
+ * Status frame period profiles for the swerve Pigeon2, in milliseconds.<p>
+ * Yaw feeds odometry, so the orientation frames stay fast while active. Compass, raw and
+ * biased sensor frames are never read and always run slow.
+ */
+public enum PigeonStatusProfile {
+    ACTIVE(10, 10, 100),
+    IDLE(100, 100, 255);
+
+    // Frames we never read always get this.
+    public static final int UNUSED_PERIOD = 255;
+    public static final int UNUSED_FRAME_COUNT = 8;
+
+    private int ypr;
+    private int fusion;
+    private int general;
+
+    private PigeonStatusProfile(int ypr, int fusion, int general) {
+        this.ypr = ypr;
+        this.fusion = fusion;
+        this.general = general;
+    }
+
+    public int getYawPitchRollPeriod() {
+        return ypr;
+    }
+
+    public int getSensorFusionPeriod() {
+        return fusion;
+    }
+
+    public int getGeneralPeriod() {
+        return general;
+    }
+
+    /**
+     * @return Roughly how many CAN frames per second the Pigeon2 sends on this profile.
+     */
+    public double getFramesPerSecond() {
+        return 1000.0 / ypr + 1000.0 / fusion + 1000.0 / general + UNUSED_FRAME_COUNT * 1000.0 / UNUSED_PERIOD;
+    }
+}
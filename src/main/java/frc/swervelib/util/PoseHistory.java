@@ -0,0 +1,180 @@
+package frc.swervelib.util;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Fixed size circular history of robot poses, indexed by FPGA timestamp.<p>
+ * Everything is stored in primitive arrays, so recording a pose never allocates. Lookups are a
+ * binary search over the buffer followed by interpolation between the two samples around the
+ * requested time. Timestamps must be added in increasing order.
+ */
+public class PoseHistory {
+    private final int capacity;
+    private final double window_seconds;
+    private final double[] timestamps;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] thetas; // radians
+
+    // Index of the oldest sample, and how many samples are valid.
+    private int head = 0;
+    private int size = 0;
+
+    /**
+     * @param window_seconds How far back to keep poses, in seconds
+     * @param sample_period_seconds How often poses will be added, used to size the buffer
+     */
+    public PoseHistory(double window_seconds, double sample_period_seconds) {
+        this.window_seconds = window_seconds;
+        // A few extra slots so loop overruns don't shrink the window.
+        this.capacity = (int) Math.ceil(window_seconds / sample_period_seconds) + 4;
+        this.timestamps = new double[capacity];
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+        this.thetas = new double[capacity];
+    }
+
+    /**
+     * Records a pose. Samples older than the window, or past the capacity, are dropped.
+     * @param timestamp FPGA timestamp in seconds
+     * @param x x position in meters
+     * @param y y position in meters
+     * @param theta heading in radians
+     */
+    public void addSample(double timestamp, double x, double y, double theta) {
+        if (size > 0 && timestamp <= timestamps[index(size - 1)]) {
+            // Out of order or duplicate, lookups depend on strictly increasing time.
+            return;
+        }
+
+        if (size == capacity) {
+            head = (head + 1) % capacity;
+            size--;
+        }
+
+        int slot = index(size);
+        timestamps[slot] = timestamp;
+        xs[slot] = x;
+        ys[slot] = y;
+        thetas[slot] = theta;
+        size++;
+
+        // Drop anything that's fallen out of the window.
+        while (size > 1 && timestamps[head] < timestamp - window_seconds) {
+            head = (head + 1) % capacity;
+            size--;
+        }
+    }
+
+    /**
+     * Records a pose.
+     * @param timestamp FPGA timestamp in seconds
+     * @param pose the pose at that time
+     */
+    public void addSample(double timestamp, Pose2d pose) {
+        addSample(timestamp, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+    }
+
+    /**
+     * Linear interpolation of the pose at a timestamp, without allocating. Times outside the
+     * history are clamped to the oldest or newest sample.
+     * @param timestamp FPGA timestamp in seconds
+     * @param out Filled with {x meters, y meters, theta radians}
+     * @return false if the history is empty
+     */
+    public boolean sample(double timestamp, double[] out) {
+        if (size == 0) {
+            return false;
+        }
+
+        int upper = search(timestamp);
+        if (upper == 0 || upper == size) {
+            int slot = index(upper == 0 ? 0 : size - 1);
+            out[0] = xs[slot];
+            out[1] = ys[slot];
+            out[2] = thetas[slot];
+            return true;
+        }
+
+        int low = index(upper - 1);
+        int high = index(upper);
+        double t = (timestamp - timestamps[low]) / (timestamps[high] - timestamps[low]);
+
+        out[0] = xs[low] + (xs[high] - xs[low]) * t;
+        out[1] = ys[low] + (ys[high] - ys[low]) * t;
+        // Take the short way around so we don't spin through 180 when crossing +-pi.
+        double dtheta = Math.IEEEremainder(thetas[high] - thetas[low], 2 * Math.PI);
+        out[2] = thetas[low] + dtheta * t;
+        return true;
+    }
+
+    /**
+     * SE(2) interpolation of the pose at a timestamp, following the arc the robot drove between
+     * the two samples rather than a straight line. Times outside the history are clamped.
+     * @param timestamp FPGA timestamp in seconds
+     * @return the pose at that time, or null if the history is empty
+     */
+    public Pose2d getPose(double timestamp) {
+        if (size == 0) {
+            return null;
+        }
+
+        int upper = search(timestamp);
+        if (upper == 0 || upper == size) {
+            return poseAt(index(upper == 0 ? 0 : size - 1));
+        }
+
+        int low = index(upper - 1);
+        int high = index(upper);
+        double t = (timestamp - timestamps[low]) / (timestamps[high] - timestamps[low]);
+        return poseAt(low).interpolate(poseAt(high), t);
+    }
+
+    /**
+     * @return The oldest timestamp in the history, or NaN if it is empty.
+     */
+    public double getOldestTimestamp() {
+        return size == 0 ? Double.NaN : timestamps[head];
+    }
+
+    /**
+     * @return The newest timestamp in the history, or NaN if it is empty.
+     */
+    public double getNewestTimestamp() {
+        return size == 0 ? Double.NaN : timestamps[index(size - 1)];
+    }
+
+    /**
+     * Forgets every sample. Used when odometry is reset, so we never interpolate across the jump.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * @return The logical position (0 = oldest) of the first sample newer than the timestamp.
+     */
+    private int search(double timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[index(mid)] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int index(int logical) {
+        return (head + logical) % capacity;
+    }
+
+    private Pose2d poseAt(int slot) {
+        return new Pose2d(xs[slot], ys[slot], new Rotation2d(thetas[slot]));
+    }
+}
@@ -9,8 +9,16 @@ import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
 import frc.bd_util.BDManager;
+import frc.bd_util.DeviceConfigCache;
+import frc.bd_util.DeviceInitializer;
+import frc.bd_util.TelemetryPublisher;
+import frc.bd_util.UpdateRate;
 import frc.bd_util.custom_talon.SensorUnits;
+import frc.bd_util.custom_talon.StatusFrameProfile;
+import frc.bd_util.custom_talon.TalonConfigWriter;
+import frc.bd_util.custom_talon.TalonConfigWriter.Param;
 import frc.bd_util.custom_talon.TalonFXW;
+import frc.bd_util.custom_talon.TalonSignal;
 import frc.bd_util.pidtuner.PIDTunerTalon;
 import frc.robot.Constants;
 import frc.robot.Robot;
@@ -19,11 +27,14 @@ import frc.swervelib.util.SwerveSettings.ShuffleboardConstants.BOARD_PLACEMENT;
 import frc.swervelib.util.SwerveSettings.Swerve.TESTING_TYPE;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+import com.ctre.phoenix.ErrorCode;
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.DemandType;
 import com.ctre.phoenix.motorcontrol.can.TalonFXConfiguration;
 import com.ctre.phoenix.sensors.CANCoder;
+import com.ctre.phoenix.sensors.CANCoderStatusFrame;
 
 public class SwerveModule {
     public String name;
@@ -32,30 +43,48 @@ public class SwerveModule {
     public TalonFXW mAngleMotor;
     public TalonFXW mDriveMotor;
     private CANCoder angleEncoder;
+    private CANCoderStatusProfile encoder_profile = null;
     private double lastAngle;
+    private double commandedSpeed = 0.0;
+    // Async odometry thread only.
+    private double sampled_angle = Double.NaN;
+    private SwerveSensorSnapshot snapshot;
 
     private ShuffleboardLayout layout;
 
     SimpleMotorFeedforward feedforward = new SimpleMotorFeedforward(SwerveSettings.Swerve.driveKS, SwerveSettings.Swerve.driveKV, SwerveSettings.Swerve.driveKA);
 
-    public SwerveModule(int moduleNumber, SwerveModuleConstants moduleConstants, ShuffleboardTab sub_tab) {
+    /**
+     * @param moduleNumber index of this module, matches the kinematics order
+     * @param moduleConstants CAN IDs and offsets for this module
+     * @param snapshot the per-loop sensor snapshot owned by the drive, read instead of the motors
+     * @param sub_tab tab to put this module's telemetry on
+     */
+    public SwerveModule(int moduleNumber, SwerveModuleConstants moduleConstants, SwerveSensorSnapshot snapshot, ShuffleboardTab sub_tab) {
         this.moduleNumber = moduleNumber;
+        this.snapshot = snapshot;
         name = moduleConstants.name;
         angleOffset = moduleConstants.angleOffset;
         
-        /* Angle Encoder Config */
         angleEncoder = new CANCoder(moduleConstants.cancoderID);
-        configAngleEncoder();
-
-        /* Angle Motor Config */
         mAngleMotor = new TalonFXW(moduleConstants.angleMotorID, SensorUnits.METRIC, Robot.ctreConfigs.angleFXWConfig);
-        configAngleMotor();
-
-        /* Drive Motor Config */
         mDriveMotor = new TalonFXW(moduleConstants.driveMotorID, SensorUnits.METRIC, Robot.ctreConfigs.driveFXWConfig);
-        configDriveMotor();
+        mDriveMotor.setOutputEpsilon(ControlMode.PercentOutput, SwerveSettings.Swerve.drivePercentEpsilon);
+        mDriveMotor.setOutputEpsilon(ControlMode.Velocity, SwerveSettings.Swerve.driveVelocityEpsilon);
+        mDriveMotor.setFeedforwardEpsilon(SwerveSettings.Swerve.driveFeedforwardEpsilon);
+        mAngleMotor.setOutputEpsilon(ControlMode.Position, SwerveSettings.Swerve.anglePositionEpsilon);
+
+        /* Angle Encoder + Angle Motor Config, together since the motor is seeded from the encoder */
+        DeviceInitializer.getInstance().submit("Mod " + moduleNumber + " steer", () -> {
+            configAngleEncoder();
+            DeviceInitializer.checkCancelled();
+            configAngleMotor();
+            // Nothing has refreshed the signal cache yet, and this isn't the main thread.
+            lastAngle = Conversions.falconToDegrees(mAngleMotor.getSelectedSensorPosition(), SwerveSettings.Swerve.angleGearRatio);
+        });
 
-        lastAngle = getState().angle.getDegrees();
+        /* Drive Motor Config */
+        DeviceInitializer.getInstance().submit("Mod " + moduleNumber + " drive", this::configDriveMotor);
 
         BOARD_PLACEMENT placement = BOARD_PLACEMENT.valueOf("TEMP" + moduleNumber);
 
@@ -64,15 +93,17 @@ public class SwerveModule {
         .withPosition(placement.getX(), placement.getY())
         .withSize(1, 2);
 
-        layout.addDouble("Angle Temp", () -> mAngleMotor.getTemperature()); // C -> F
-        layout.addDouble("Drive Temp", () -> mDriveMotor.getTemperature());
+        // Temperatures barely move, once a second is plenty.
+        TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+        telemetry.addDouble(layout.add("Angle Temp", 0.0).getEntry(), UpdateRate.ONE_HZ, () -> snapshot.getAngleTemperature(moduleNumber)); // C -> F
+        telemetry.addDouble(layout.add("Drive Temp", 0.0).getEntry(), UpdateRate.ONE_HZ, () -> snapshot.getDriveTemperature(moduleNumber));
 
         ShuffleboardTab tab = BDManager.getInstance().getInstanceManagerialTab();
         if (Constants.testing) {
             ShuffleboardLayout lay = tab.getLayout("module " + moduleNumber, BuiltInLayouts.kGrid)
             .withProperties(Map.of("Number of columns", 1, "Number of rows", 2));
-            lay.addDouble("Cancoder", () -> getCanCoder().getDegrees());
-            lay.addDouble("Integrated", () -> getState().angle.getDegrees());
+            telemetry.addDouble(lay.add("Cancoder", 0.0).getEntry(), UpdateRate.TEN_HZ, () -> getCanCoder().getDegrees());
+            telemetry.addDouble(lay.add("Integrated", 0.0).getEntry(), UpdateRate.TEN_HZ, () -> snapshot.getAngleDegrees(moduleNumber));
         }
 
         if (moduleConstants.type == TESTING_TYPE.DRIVE) {
@@ -85,20 +116,56 @@ public class SwerveModule {
     }
 
     public void setDesiredState(SwerveModuleState desiredState, boolean isOpenLoop) {
-        desiredState = CTREModuleState.optimize(desiredState, getState().angle); //Custom optimize command, since default WPILib optimize assumes continuous controller which CTRE is not
+        desiredState = CTREModuleState.optimize(desiredState, Rotation2d.fromDegrees(snapshot.getAngleDegrees(moduleNumber))); //Custom optimize command, since default WPILib optimize assumes continuous controller which CTRE is not
+        setOptimizedState(desiredState.speedMetersPerSecond, desiredState.angle.getDegrees(), isOpenLoop);
+    }
 
+    /**
+     * Sends an already optimized state to the motors. Used by the allocation free drive path.
+     * @param speedMetersPerSecond The optimized wheel speed
+     * @param angleDegrees The optimized (continuous) module angle
+     * @param isOpenLoop Determines if it uses PID
+     */
+    public void setOptimizedState(double speedMetersPerSecond, double angleDegrees, boolean isOpenLoop) {
         if(isOpenLoop) {
-            double percentOutput = desiredState.speedMetersPerSecond / SwerveSettings.Swerve.maxSpeed;
-            mDriveMotor.set(ControlMode.PercentOutput, percentOutput);
+            double percentOutput = speedMetersPerSecond / SwerveSettings.Swerve.maxSpeed;
+            mDriveMotor.setOutput(ControlMode.PercentOutput, percentOutput);
         }
         else {
-            double velocity = Conversions.MPSToFalcon(desiredState.speedMetersPerSecond, SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
-            mDriveMotor.set(ControlMode.Velocity, velocity, DemandType.ArbitraryFeedForward, feedforward.calculate(desiredState.speedMetersPerSecond));
+            double velocity = Conversions.MPSToFalcon(speedMetersPerSecond, SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+            mDriveMotor.setOutput(ControlMode.Velocity, velocity, DemandType.ArbitraryFeedForward, feedforward.calculate(speedMetersPerSecond));
         }
 
-        double angle = (Math.abs(desiredState.speedMetersPerSecond) <= (SwerveSettings.Swerve.maxSpeed * 0.01)) ? lastAngle : desiredState.angle.getDegrees(); //Prevent rotating module if speed is less then 1%. Prevents Jittering.
-        mAngleMotor.set(ControlMode.Position, Conversions.degreesToFalcon(angle, SwerveSettings.Swerve.angleGearRatio)); 
+        double angle = holdAngle(speedMetersPerSecond, angleDegrees, lastAngle);
+        mAngleMotor.setOutput(ControlMode.Position, Conversions.degreesToFalcon(angle, SwerveSettings.Swerve.angleGearRatio));
         lastAngle = angle;
+        commandedSpeed = speedMetersPerSecond;
+    }
+
+    /**
+     * Picks the angle to actually send. Prevents rotating the module if speed is less than 1%,
+     * which prevents jittering. Static so log replay runs the same rule.
+     * @param speedMetersPerSecond The optimized wheel speed
+     * @param angleDegrees The optimized module angle
+     * @param lastAngle The angle sent last time
+     * @return The angle to send, in degrees
+     */
+    public static double holdAngle(double speedMetersPerSecond, double angleDegrees, double lastAngle) {
+        return (Math.abs(speedMetersPerSecond) <= (SwerveSettings.Swerve.maxSpeed * 0.01)) ? lastAngle : angleDegrees;
+    }
+
+    /**
+     * @return The wheel speed last sent to the drive motor, in MPS.
+     */
+    public double getCommandedSpeed() {
+        return commandedSpeed;
+    }
+
+    /**
+     * @return The module angle last sent to the angle motor, in degrees.
+     */
+    public double getCommandedAngle() {
+        return lastAngle;
     }
 
     private void resetToAbsolute() {
@@ -107,64 +174,166 @@ public class SwerveModule {
     }
 
     private void configAngleEncoder() {        
-        angleEncoder.configFactoryDefault();
-        angleEncoder.configAllSettings(Robot.ctreConfigs.swerveCanCoderConfig);
+        DeviceConfigCache.getInstance().configure("CANCoder " + angleEncoder.getDeviceID(), Robot.ctreConfigs.swerveCanCoderConfig,
+            () -> angleEncoder.configGetCustomParam(DeviceConfigCache.STAMP_PARAM, 30),
+            stamp -> angleEncoder.configSetCustomParam(stamp, DeviceConfigCache.STAMP_PARAM, 30),
+            () -> {
+                ErrorCode error = angleEncoder.configFactoryDefault();
+                return error != ErrorCode.OK ? error : angleEncoder.configAllSettings(Robot.ctreConfigs.swerveCanCoderConfig);
+            });
+        applyEncoderStatusProfile(CANCoderStatusProfile.ACTIVE, 30);
+    }
+
+    private void applyEncoderStatusProfile(CANCoderStatusProfile profile, int timeoutMs) {
+        angleEncoder.setStatusFramePeriod(CANCoderStatusFrame.SensorData, profile.getSensorDataPeriod(), timeoutMs);
+        angleEncoder.setStatusFramePeriod(CANCoderStatusFrame.VbatAndFaults, profile.getVbatAndFaultsPeriod(), timeoutMs);
+        encoder_profile = profile;
+    }
+
+    /**
+     * @return Roughly how many CAN frames per second this module's CANCoder sends.
+     */
+    public double getEncoderFrameRate() {
+        return encoder_profile == null ? 0.0 : encoder_profile.getFramesPerSecond();
+    }
+
+    /**
+     * Switches every device in this module between its normal status frame rates and the slow idle
+     * ones. Doesn't wait for confirmation, so it's safe to call from the main loop.
+     * @param active true for the DRIVE / STEER profiles, false for IDLE_MECHANISM
+     */
+    public void setStatusProfiles(boolean active) {
+        if (active) {
+            mDriveMotor.applyConfiguredStatusProfile(0);
+            mAngleMotor.applyConfiguredStatusProfile(0);
+        } else {
+            mDriveMotor.applyStatusProfile(StatusFrameProfile.IDLE_MECHANISM, 0);
+            mAngleMotor.applyStatusProfile(StatusFrameProfile.IDLE_MECHANISM, 0);
+        }
+        applyEncoderStatusProfile(active ? CANCoderStatusProfile.ACTIVE : CANCoderStatusProfile.IDLE, 0);
     }
 
     private void configAngleMotor() {
-        mAngleMotor.configFactoryDefault();
-        mAngleMotor.configAllSettings(Robot.ctreConfigs.swerveAngleFXConfig);
+        boolean skipped = configTalon(mAngleMotor, Robot.ctreConfigs.swerveAngleFXConfig);
         mAngleMotor.setInverted(SwerveSettings.Swerve.angleMotorInvert);
         mAngleMotor.setNeutralMode(SwerveSettings.Swerve.angleNeutralMode);
+        mAngleMotor.applyConfiguredStatusProfile(30);
+        DeviceInitializer.checkCancelled();
+        markRampsApplied(mAngleMotor, Robot.ctreConfigs.swerveAngleFXConfig, skipped);
         resetToAbsolute();
     }
 
-    public void reapplyConfig() {
-        TalonFXConfiguration configAngle = new TalonFXConfiguration();
-
-        mAngleMotor.getAllConfigs(configAngle);
-
-        configAngle.closedloopRamp = SwerveSettings.Swerve.closedLoopRamp;
-        configAngle.openloopRamp = SwerveSettings.Swerve.openLoopRamp;
-
+    /**
+     * Reapplies the settings a driver profile can change. Inversion and neutral mode are set right
+     * away, ramps are queued on each motor's {@link TalonConfigWriter} so this never waits on CAN.
+     * @return completes once every ramp is on the motors
+     */
+    public CompletableFuture<Void> reapplyConfig() {
         mAngleMotor.setInverted(SwerveSettings.Swerve.angleMotorInvert);
         mAngleMotor.setNeutralMode(SwerveSettings.Swerve.angleNeutralMode);
-        mAngleMotor.configAllSettings(configAngle);
-
-
-        TalonFXConfiguration configDrive = new TalonFXConfiguration();
-        
-        mDriveMotor.getAllConfigs(configDrive);
-
-        configDrive.closedloopRamp = SwerveSettings.Swerve.closedLoopRamp;
-        configDrive.openloopRamp = SwerveSettings.Swerve.openLoopRamp;
-
         mDriveMotor.setInverted(SwerveSettings.Swerve.driveMotorInvert);
         mDriveMotor.setNeutralMode(SwerveSettings.Swerve.driveNeutralMode);
-        mDriveMotor.configAllSettings(configDrive);
+
+        TalonConfigWriter angle_writer = mAngleMotor.getConfigWriter();
+        TalonConfigWriter drive_writer = mDriveMotor.getConfigWriter();
+        return CompletableFuture.allOf(
+            angle_writer.set(Param.CLOSED_LOOP_RAMP, SwerveSettings.Swerve.closedLoopRamp),
+            angle_writer.set(Param.OPEN_LOOP_RAMP, SwerveSettings.Swerve.openLoopRamp),
+            drive_writer.set(Param.CLOSED_LOOP_RAMP, SwerveSettings.Swerve.closedLoopRamp),
+            drive_writer.set(Param.OPEN_LOOP_RAMP, SwerveSettings.Swerve.openLoopRamp)
+        );
     }
 
     private void configDriveMotor() {        
-        mDriveMotor.configFactoryDefault();
-        mDriveMotor.configAllSettings(Robot.ctreConfigs.swerveDriveFXConfig);
+        boolean skipped = configTalon(mDriveMotor, Robot.ctreConfigs.swerveDriveFXConfig);
         mDriveMotor.setInverted(SwerveSettings.Swerve.driveMotorInvert);
         mDriveMotor.setNeutralMode(SwerveSettings.Swerve.driveNeutralMode);
+        mDriveMotor.applyConfiguredStatusProfile(30);
+        DeviceInitializer.checkCancelled();
+        markRampsApplied(mDriveMotor, Robot.ctreConfigs.swerveDriveFXConfig, skipped);
         mDriveMotor.setSelectedSensorPosition(0);
     }
 
+    // Factory default and write the whole config, unless the fingerprint cache says the motor already has it.
+    // Returns true if it was skipped.
+    private boolean configTalon(TalonFXW motor, TalonFXConfiguration config) {
+        return DeviceConfigCache.getInstance().configure("Talon " + motor.getDeviceID(), config,
+            () -> motor.configGetCustomParam(DeviceConfigCache.STAMP_PARAM, 30),
+            stamp -> motor.configSetCustomParam(stamp, DeviceConfigCache.STAMP_PARAM, 30),
+            () -> {
+                ErrorCode error = motor.configFactoryDefault();
+                return error != ErrorCode.OK ? error : motor.configAllSettings(config);
+            });
+    }
+
+    // If configAllSettings just wrote these, the writer can skip them until they actually change.
+    // On a skip we haven't seen what the motor has, so the writer has to assume nothing.
+    private void markRampsApplied(TalonFXW motor, TalonFXConfiguration config, boolean skipped) {
+        if (skipped) {
+            motor.getConfigWriter().invalidate();
+            return;
+        }
+        motor.getConfigWriter().markApplied(Param.OPEN_LOOP_RAMP, config.openloopRamp);
+        motor.getConfigWriter().markApplied(Param.CLOSED_LOOP_RAMP, config.closedloopRamp);
+    }
+
     public Rotation2d getCanCoder() {
         return Rotation2d.fromDegrees(angleEncoder.getAbsolutePosition());
     }
 
+    /**
+     * @return The drive wheel's velocity in meters / second as of the drive motor's last refresh,
+     * without allocating or going to the motor.
+     */
+    public double getVelocityMPS() {
+        return Conversions.falconToMPS(mDriveMotor.peekSignal(TalonSignal.VELOCITY), SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+    }
+
+    /**
+     * @return The integrated angle of the module in degrees as of the angle motor's last refresh,
+     * without allocating a {@link Rotation2d} or going to the motor.
+     */
+    public double getAngleDegrees() {
+        return Conversions.falconToDegrees(mAngleMotor.peekSignal(TalonSignal.POSITION), SwerveSettings.Swerve.angleGearRatio);
+    }
+
     public SwerveModuleState getState() {
         double velocity = Conversions.falconToMPS(mDriveMotor.getSelectedSensorVelocity(), SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
         Rotation2d angle = Rotation2d.fromDegrees(Conversions.falconToDegrees(mAngleMotor.getSelectedSensorPosition(), SwerveSettings.Swerve.angleGearRatio));
         return new SwerveModuleState(velocity, angle);
     }
     
+    /**
+     * Fills a preallocated module position straight from the motors, bypassing the signal cache.
+     * Used by the async odometry thread, and only by it. A new {@link Rotation2d} is only made
+     * when the angle actually changed since the last sample.
+     * @param out the position to fill
+     */
+    public void samplePosition(SwerveModulePosition out) {
+        double degrees = Conversions.falconToDegrees(mAngleMotor.getSelectedSensorPosition(), SwerveSettings.Swerve.angleGearRatio);
+        if (degrees != sampled_angle) {
+            out.angle = Rotation2d.fromDegrees(degrees);
+            sampled_angle = degrees;
+        }
+        out.distanceMeters = Conversions.falconToMeters(mDriveMotor.getSelectedSensorPosition(), SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+    }
+
+    /**
+     * @return The angle from the last {@link #samplePosition} call, in degrees. Async odometry thread only.
+     */
+    public double getSampledAngleDegrees() {
+        return sampled_angle;
+    }
+
+    /**
+     * Reads the module position straight from the motors, bypassing the signal cache. Safe to call
+     * from the async odometry thread.
+     * @return the module's {@link SwerveModulePosition}
+     */
     public SwerveModulePosition getSwervePosition() {
         Rotation2d angle = Rotation2d.fromDegrees(Conversions.falconToDegrees(mAngleMotor.getSelectedSensorPosition(), SwerveSettings.Swerve.angleGearRatio));
-        return new SwerveModulePosition(mDriveMotor.getObjectTotalDistanceTraveled(), angle);
+        double distance = Conversions.falconToMeters(mDriveMotor.getSelectedSensorPosition(), SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+        return new SwerveModulePosition(distance, angle);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,313 @@
+package frc.swervelib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import frc.bd_util.logging.DataLogReader;
+import frc.swervelib.math.SwerveKinematicsEngine;
+import frc.swervelib.util.SwerveSettings.VisionConstants;
+
+/**
+ * Desktop tool, run by the {@code replayLog} Gradle task. Feeds a recorded .bdlog back through
+ * the drive's odometry and module control math and reports how far the recomputed values are
+ * from what the robot logged, per channel.<p>
+ * The recorded gyro and module sensors come from a {@link LogSensorSource} instead of the CAN
+ * devices, then each loop does what {@link frc.robot.subsystems.Swerve} does: the pose estimator
+ * update, and for loops that called drive(), inverse kinematics, desaturate, optimize against the
+ * measured angle and {@link SwerveModule#holdAngle}. There's no clock, it runs as fast as it can.<p>
+ * Odometry is redone the way the log was recorded. With async odometry, every logged
+ * {@link AsyncOdometry} sample is integrated in order and checked against the pose it produced,
+ * otherwise it's one update per loop like periodic(). Vision can't be replayed, so wherever the log
+ * says a measurement was applied the replayed pose is reseeded from the logged one instead of being
+ * compared. Loops driven by setModuleStates() aren't compared, the states aren't in the log.
+ * Everything else should match exactly unless the code changed.
+ */
+public final class SwerveReplay {
+    private static final int POSE_X = 0;
+    private static final int POSE_Y = 1;
+    private static final int POSE_ROT = 2;
+    private static final int RESETS = 3;
+    private static final int MODE = 4;
+    private static final int REQUEST_X = 5;
+    private static final int REQUEST_Y = 6;
+    private static final int REQUEST_ROT = 7;
+    private static final int ASYNC = 8;
+    private static final int VISION = 9;
+    private static final int SAMPLES = 10;
+    // Then commanded angle and speed for each module, then the async sample slots.
+    private static final int COMMANDED = 11;
+    // Per sample slot: the AsyncOdometry.SAMPLE_ fields, then distance and angle for each module.
+    private static final String[] SAMPLE_FIELD_NAMES = {"Time", "Yaw", "Pose X", "Pose Y", "Pose Rot", "Reset", "Vision"};
+
+    /**
+     * Running error between the logged and recomputed values of one channel.
+     */
+    private static class Divergence {
+        final String name;
+        final boolean wraps;
+        long samples = 0;
+        double sum_squares = 0.0;
+        double max = 0.0;
+        double max_at = 0.0;
+
+        Divergence(String name, boolean wraps) {
+            this.name = name;
+            this.wraps = wraps;
+        }
+
+        void add(double logged, double replayed, double timestamp) {
+            double error = replayed - logged;
+            if (wraps) {
+                error = Math.IEEEremainder(error, 360.0);
+            }
+            error = Math.abs(error);
+            samples++;
+            sum_squares += error * error;
+            if (error > max) {
+                max = error;
+                max_at = timestamp;
+            }
+        }
+
+        double rms() {
+            return samples == 0 ? 0.0 : Math.sqrt(sum_squares / samples);
+        }
+    }
+
+    private SwerveReplay() {}
+
+    private static String[] buildExtra(int module_count, int slots) {
+        ArrayList<String> names = new ArrayList<String>();
+        names.add("Swerve/Pose X");
+        names.add("Swerve/Pose Y");
+        names.add("Swerve/Pose Rot");
+        names.add("Swerve/Odometry Resets");
+        names.add("Swerve/Request Mode");
+        names.add("Swerve/Request X");
+        names.add("Swerve/Request Y");
+        names.add("Swerve/Request Rot");
+        names.add("Swerve/Async Odometry");
+        names.add("Swerve/Vision Applied");
+        names.add("Odometry/Samples");
+        for (int i = 0; i < module_count; i++) {
+            names.add("Mod " + i + "/Commanded Angle");
+            names.add("Mod " + i + "/Commanded Speed");
+        }
+        for (int k = 0; k < slots; k++) {
+            for (String field : SAMPLE_FIELD_NAMES) {
+                names.add("Odometry " + k + "/" + field);
+            }
+            for (int i = 0; i < module_count; i++) {
+                names.add("Odometry " + k + "/Mod " + i + " Distance");
+                names.add("Odometry " + k + "/Mod " + i + " Angle");
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * @param args the log, then optionally a tolerance. With a tolerance, exits with 1 if any
+     * channel's max divergence (in that channel's own units) is over it.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: <log> [tolerance]");
+            return;
+        }
+
+        ArrayList<Divergence> report;
+        try (DataLogReader reader = new DataLogReader(new File(args[0]))) {
+            report = replay(reader);
+        }
+
+        System.out.printf("%-28s %10s %14s %14s %12s%n", "channel", "samples", "rms", "max", "max at s");
+        boolean failed = false;
+        double tolerance = args.length > 1 ? Double.parseDouble(args[1]) : Double.POSITIVE_INFINITY;
+        for (Divergence divergence : report) {
+            boolean over = divergence.max > tolerance;
+            failed |= over;
+            System.out.printf("%-28s %10d %14.6g %14.6g %12.3f%s%n", divergence.name, divergence.samples,
+                divergence.rms(), divergence.max, divergence.max_at, over ? "  OVER" : "");
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays a whole log.
+     * @param reader an open log, recorded with the drive's log channels
+     * @return divergence of every compared channel
+     * @throws IOException if the log is missing channels
+     */
+    private static ArrayList<Divergence> replay(DataLogReader reader) throws IOException {
+        int module_count = SwerveSettings.Swerve.moduleTranslations.length;
+        int slots = 0;
+        while (reader.getChannel("Odometry " + slots + "/Time") >= 0) {
+            slots++;
+        }
+        int slot_size = SAMPLE_FIELD_NAMES.length + module_count * 2;
+        int slot_start = COMMANDED + module_count * 2;
+        SwerveSensorSnapshot snapshot = new SwerveSensorSnapshot(module_count);
+        LogSensorSource source = new LogSensorSource(reader, snapshot, buildExtra(module_count, slots));
+        SwerveKinematicsEngine engine = new SwerveKinematicsEngine(SwerveSettings.Swerve.moduleTranslations);
+
+        Divergence pose_x = new Divergence("Swerve/Pose X", false);
+        Divergence pose_y = new Divergence("Swerve/Pose Y", false);
+        Divergence pose_rot = new Divergence("Swerve/Pose Rot", true);
+        Divergence[] commanded_angle = new Divergence[module_count];
+        Divergence[] commanded_speed = new Divergence[module_count];
+        ArrayList<Divergence> report = new ArrayList<Divergence>();
+        report.add(pose_x);
+        report.add(pose_y);
+        report.add(pose_rot);
+        for (int i = 0; i < module_count; i++) {
+            commanded_angle[i] = new Divergence("Mod " + i + "/Commanded Angle", true);
+            commanded_speed[i] = new Divergence("Mod " + i + "/Commanded Speed", false);
+            report.add(commanded_angle[i]);
+            report.add(commanded_speed[i]);
+        }
+
+        SwerveDrivePoseEstimator estimator = null;
+        double[] last_angle = new double[module_count];
+        SwerveModulePosition[] positions = new SwerveModulePosition[module_count];
+        for (int i = 0; i < module_count; i++) {
+            positions[i] = new SwerveModulePosition();
+        }
+        double resets = 0;
+        double vision = 0;
+        boolean reseed = true;
+        Boolean async = null;
+        long loops = 0;
+        long samples = 0;
+        long vision_reseeds = 0;
+        long start = System.nanoTime();
+
+        while (source.next()) {
+            loops++;
+            double now = source.getTimestamp();
+            Pose2d logged_pose = new Pose2d(source.get(POSE_X), source.get(POSE_Y), Rotation2d.fromDegrees(source.get(POSE_ROT)));
+            boolean loop_async = source.get(ASYNC) != 0;
+            if (async == null) {
+                async = loop_async;
+                System.out.println("Odometry was " + (async ? "async, replaying its samples" : "once per loop"));
+            } else if (async != loop_async) {
+                throw new IOException("Odometry mode changed partway through the log at " + now + " s");
+            }
+
+            if (async) {
+                // Every sample the sampler took, in the order it took them, each checked against the pose it produced.
+                int count = (int) Math.round(source.get(SAMPLES));
+                for (int k = 0; k < count; k++) {
+                    int base = slot_start + k * slot_size;
+                    double time = source.get(base + AsyncOdometry.SAMPLE_TIME);
+                    Rotation2d yaw = Rotation2d.fromDegrees(source.get(base + AsyncOdometry.SAMPLE_YAW));
+                    for (int i = 0; i < module_count; i++) {
+                        positions[i].distanceMeters = source.get(base + SAMPLE_FIELD_NAMES.length + i * 2);
+                        positions[i].angle = Rotation2d.fromDegrees(source.get(base + SAMPLE_FIELD_NAMES.length + i * 2 + 1));
+                    }
+                    Pose2d sample_pose = new Pose2d(source.get(base + AsyncOdometry.SAMPLE_POSE_X), source.get(base + AsyncOdometry.SAMPLE_POSE_Y),
+                        Rotation2d.fromDegrees(source.get(base + AsyncOdometry.SAMPLE_POSE_ROT)));
+                    samples++;
+
+                    if (estimator == null) {
+                        estimator = newEstimator(yaw, positions, sample_pose);
+                    } else if (source.get(base + AsyncOdometry.SAMPLE_RESET) != 0) {
+                        estimator.resetPosition(yaw, positions, sample_pose);
+                    } else {
+                        Pose2d pose = estimator.updateWithTime(time, yaw, positions);
+                        if (source.get(base + AsyncOdometry.SAMPLE_VISION) != 0) {
+                            estimator.resetPosition(yaw, positions, sample_pose);
+                            vision_reseeds++;
+                        } else {
+                            pose_x.add(sample_pose.getX(), pose.getX(), time);
+                            pose_y.add(sample_pose.getY(), pose.getY(), time);
+                            pose_rot.add(sample_pose.getRotation().getDegrees(), pose.getRotation().getDegrees(), time);
+                        }
+                    }
+                }
+            } else {
+                // The same update Swerve.periodic() does. The logged pose was captured before any
+                // reset in the same loop, so a reset is picked up from the following loop's pose.
+                Rotation2d yaw = Rotation2d.fromDegrees(snapshot.getYawDegrees());
+                snapshot.copyModulePositions(positions);
+                if (estimator == null) {
+                    estimator = newEstimator(yaw, positions, logged_pose);
+                    reseed = false;
+                } else if (reseed) {
+                    estimator.resetPosition(yaw, positions, logged_pose);
+                    reseed = false;
+                } else {
+                    Pose2d pose = estimator.updateWithTime(now, yaw, positions);
+                    if (source.get(VISION) != vision) {
+                        // The logged pose is after the vision correction.
+                        estimator.resetPosition(yaw, positions, logged_pose);
+                        vision_reseeds++;
+                    } else {
+                        pose_x.add(logged_pose.getX(), pose.getX(), now);
+                        pose_y.add(logged_pose.getY(), pose.getY(), now);
+                        pose_rot.add(logged_pose.getRotation().getDegrees(), pose.getRotation().getDegrees(), now);
+                    }
+                }
+                if (source.get(RESETS) != resets) {
+                    resets = source.get(RESETS);
+                    reseed = true;
+                }
+                vision = source.get(VISION);
+            }
+
+            // Control, the same math as Swerve.drive() and SwerveModule.setOptimizedState().
+            DriveRequestMode mode = DriveRequestMode.fromOrdinal((int) Math.round(source.get(MODE)));
+            if (loops == 1 || mode == DriveRequestMode.MODULE_STATES) {
+                for (int i = 0; i < module_count; i++) {
+                    last_angle[i] = source.get(COMMANDED + i * 2);
+                }
+                continue;
+            }
+            if (mode == DriveRequestMode.NONE) {
+                continue;
+            }
+
+            if (mode == DriveRequestMode.FIELD_RELATIVE) {
+                engine.toModuleStatesFieldRelative(source.get(REQUEST_X), source.get(REQUEST_Y), source.get(REQUEST_ROT), snapshot.getYawDegrees());
+            } else {
+                engine.toModuleStates(source.get(REQUEST_X), source.get(REQUEST_Y), source.get(REQUEST_ROT));
+            }
+            engine.desaturate(SwerveSettings.Swerve.maxSpeed);
+            for (int i = 0; i < module_count; i++) {
+                engine.optimize(i, snapshot.getAngleDegrees(i));
+                double speed = engine.getSpeed(i);
+                double angle = SwerveModule.holdAngle(speed, engine.getAngleDegrees(i), last_angle[i]);
+                last_angle[i] = angle;
+
+                // Commanded values are logged as floats.
+                commanded_angle[i].add(source.get(COMMANDED + i * 2), (float) angle, now);
+                commanded_speed[i].add(source.get(COMMANDED + i * 2 + 1), (float) speed, now);
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Replayed %d loops (%.1f s of robot time) in %.2f s, %.0f loops/s%n", loops,
+            (reader.getEndMicros() - reader.getStartMicros()) / 1e6, seconds, loops / Math.max(seconds, 1e-9));
+        if (samples > 0) {
+            System.out.printf("%d async odometry samples integrated%n", samples);
+        }
+        if (vision_reseeds > 0) {
+            System.out.printf("%d pose updates had vision applied, reseeded from the log instead of compared%n", vision_reseeds);
+        }
+        return report;
+    }
+
+    private static SwerveDrivePoseEstimator newEstimator(Rotation2d yaw, SwerveModulePosition[] positions, Pose2d pose) {
+        return new SwerveDrivePoseEstimator(
+            SwerveSettings.Swerve.swerveKinematics, yaw, positions, pose,
+            VecBuilder.fill(VisionConstants.stateTranslationStdDev, VisionConstants.stateTranslationStdDev, VisionConstants.stateRotationStdDev),
+            VecBuilder.fill(VisionConstants.baseTranslationStdDev, VisionConstants.baseTranslationStdDev, VisionConstants.baseRotationStdDev));
+    }
+}
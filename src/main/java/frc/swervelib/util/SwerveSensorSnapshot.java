@@ -0,0 +1,213 @@
+package frc.swervelib.util;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import frc.bd_util.custom_talon.TalonSignal;
+
+/**
+ * Every swerve sensor value for one loop, read once at the start of the tick.<p>
+ * {@link frc.robot.subsystems.Swerve} captures this first thing in periodic(), and everything
+ * after it in the same loop (odometry, optimization, teleop, telemetry) reads from here instead
+ * of going back to the CAN devices. That cuts the number of JNI calls per loop and means every
+ * calculation in a tick sees the same values. Storage is allocated once, and nothing outside
+ * can write to it: the getters return values, and module positions are copied out with
+ * {@link #copyModulePositions}.<p>
+ * The async odometry sampler runs on its own thread and does its own reads, it does not use this.
+ */
+public class SwerveSensorSnapshot {
+    // Only the signals read below are refreshed, the rest of the motor's cache is left alone.
+    private static final TalonSignal[] DRIVE_SIGNALS = {
+        TalonSignal.POSITION, TalonSignal.VELOCITY, TalonSignal.SUPPLY_CURRENT, TalonSignal.TEMPERATURE
+    };
+    private static final TalonSignal[] ANGLE_SIGNALS = {
+        TalonSignal.POSITION, TalonSignal.SUPPLY_CURRENT, TalonSignal.TEMPERATURE
+    };
+
+    private final int module_count;
+
+    private double timestamp;
+    private double yaw_degrees;
+
+    private final double[] angle_degrees;
+    private final double[] velocity_mps;
+    private final double[] distance_meters;
+    private final double[] drive_current;
+    private final double[] angle_current;
+    private final double[] drive_temperature;
+    private final double[] angle_temperature;
+    private final SwerveModulePosition[] positions;
+
+    /**
+     * @param module_count number of swerve modules
+     */
+    public SwerveSensorSnapshot(int module_count) {
+        this.module_count = module_count;
+        this.angle_degrees = new double[module_count];
+        this.velocity_mps = new double[module_count];
+        this.distance_meters = new double[module_count];
+        this.drive_current = new double[module_count];
+        this.angle_current = new double[module_count];
+        this.drive_temperature = new double[module_count];
+        this.angle_temperature = new double[module_count];
+
+        this.positions = new SwerveModulePosition[module_count];
+        for (int i = 0; i < module_count; i++) {
+            positions[i] = new SwerveModulePosition();
+        }
+    }
+
+    /**
+     * Sets a module's position. Rotation2d is immutable, so a new one is only made when the angle
+     * actually moved, which it mostly doesn't while driving straight or sitting still.
+     */
+    private void setPosition(int module, double angle, double distance) {
+        positions[module].distanceMeters = distance;
+        if (angle != angle_degrees[module] || positions[module].angle == null) {
+            positions[module].angle = Rotation2d.fromDegrees(angle);
+        }
+        angle_degrees[module] = angle;
+    }
+
+    /**
+     * Reads every sensor. Only the owner of the snapshot should call this, once per loop.
+     * @param timestamp FPGA timestamp in seconds
+     * @param yaw gyro yaw in degrees
+     * @param modules the swerve modules, indexed by module number
+     */
+    public void capture(double timestamp, double yaw, SwerveModule[] modules) {
+        this.timestamp = timestamp;
+        this.yaw_degrees = yaw;
+
+        for (SwerveModule mod : modules) {
+            // One batched read per motor, everything below comes out of the signal cache.
+            mod.mDriveMotor.refresh(DRIVE_SIGNALS);
+            mod.mAngleMotor.refresh(ANGLE_SIGNALS);
+
+            int i = mod.moduleNumber;
+            velocity_mps[i] = mod.getVelocityMPS();
+            distance_meters[i] = mod.mDriveMotor.getObjectTotalDistanceTraveled();
+            drive_current[i] = mod.mDriveMotor.getSupplyCurrent();
+            angle_current[i] = mod.mAngleMotor.getSupplyCurrent();
+            drive_temperature[i] = mod.mDriveMotor.getTemperature();
+            angle_temperature[i] = mod.mAngleMotor.getTemperature();
+            setPosition(i, mod.getAngleDegrees(), distance_meters[i]);
+        }
+    }
+
+    /**
+     * Sets the timestamp and gyro from recorded values instead of the devices, for log replay.
+     * Follow it with {@link #loadModule} for every module.
+     * @param timestamp FPGA timestamp in seconds
+     * @param yaw gyro yaw in degrees
+     */
+    public void loadGyro(double timestamp, double yaw) {
+        this.timestamp = timestamp;
+        this.yaw_degrees = yaw;
+    }
+
+    /**
+     * Sets one module from recorded values instead of the devices, for log replay.
+     * @param module module number
+     * @param angle integrated module angle in degrees
+     * @param velocity drive wheel velocity in meters / second
+     * @param distance total drive distance in meters
+     */
+    public void loadModule(int module, double angle, double velocity, double distance) {
+        velocity_mps[module] = velocity;
+        distance_meters[module] = distance;
+        setPosition(module, angle, distance);
+    }
+
+    /**
+     * @return FPGA timestamp of the capture, in seconds
+     */
+    public double getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return gyro yaw in degrees, CCW+
+     */
+    public double getYawDegrees() {
+        return yaw_degrees;
+    }
+
+    /**
+     * @param module module number
+     * @return integrated module angle in degrees
+     */
+    public double getAngleDegrees(int module) {
+        return angle_degrees[module];
+    }
+
+    /**
+     * @param module module number
+     * @return drive wheel velocity in meters / second
+     */
+    public double getVelocityMPS(int module) {
+        return velocity_mps[module];
+    }
+
+    /**
+     * @param module module number
+     * @return total drive distance in meters
+     */
+    public double getDistanceMeters(int module) {
+        return distance_meters[module];
+    }
+
+    /**
+     * @param module module number
+     * @return drive motor supply current in amps
+     */
+    public double getDriveCurrent(int module) {
+        return drive_current[module];
+    }
+
+    /**
+     * @param module module number
+     * @return angle motor supply current in amps
+     */
+    public double getAngleCurrent(int module) {
+        return angle_current[module];
+    }
+
+    /**
+     * @param module module number
+     * @return drive motor temperature in celsius
+     */
+    public double getDriveTemperature(int module) {
+        return drive_temperature[module];
+    }
+
+    /**
+     * @param module module number
+     * @return angle motor temperature in celsius
+     */
+    public double getAngleTemperature(int module) {
+        return angle_temperature[module];
+    }
+
+    /**
+     * Copies the module positions as of the capture, without allocating.
+     * @param out indexed by module number, null slots get a new {@link SwerveModulePosition} the first time
+     * @return out
+     */
+    public SwerveModulePosition[] copyModulePositions(SwerveModulePosition[] out) {
+        for (int i = 0; i < module_count; i++) {
+            if (out[i] == null) {
+                out[i] = new SwerveModulePosition();
+            }
+            out[i].distanceMeters = positions[i].distanceMeters;
+            out[i].angle = positions[i].angle;
+        }
+        return out;
+    }
+
+    /**
+     * @return number of modules in the snapshot
+     */
+    public int getModuleCount() {
+        return module_count;
+    }
+}
@@ -7,6 +7,7 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.util.Units;
+import frc.bd_util.custom_talon.StatusFrameProfile;
 
 public final class SwerveSettings {
     public static double deadzone = 0.1;
@@ -34,12 +35,14 @@ public final class SwerveSettings {
         public static final double driveGearRatio = (8.14 / 1.0); //6.86:1
         public static final double angleGearRatio = (12.8 / 1.0); //12.8:1
 
-        public static final SwerveDriveKinematics swerveKinematics = new SwerveDriveKinematics(
+        public static final Translation2d[] moduleTranslations = {
                 new Translation2d(wheelBase / 2.0, trackWidth / 2.0),
                 new Translation2d(wheelBase / 2.0, -trackWidth / 2.0),
                 new Translation2d(-wheelBase / 2.0, trackWidth / 2.0),
                 new Translation2d(-wheelBase / 2.0, -trackWidth / 2.0)
-        );
+        };
+
+        public static final SwerveDriveKinematics swerveKinematics = new SwerveDriveKinematics(moduleTranslations);
 
         /* Swerve Current Limiting */
         public static final int angleContinuousCurrentLimit = 25;
@@ -73,6 +76,29 @@ public final class SwerveSettings {
         public static double maxSpeed = 1.5; // mps = 3.96
         public static double maxAngularVelocity = 5;
 
+        /* Output Gate, smallest change worth a set() call (see TalonFXW.setOutput) */
+        public static final double drivePercentEpsilon = 1e-3; // percent output
+        public static final double driveVelocityEpsilon = 2.0; // Falcon counts per 100 ms, ~0.4 mm/s at the wheel
+        public static final double driveFeedforwardEpsilon = 1e-3; // percent output
+        public static final double anglePositionEpsilon = 2.0; // Falcon counts, ~0.03 degrees at the wheel
+
+        /* Odometry Sampling */
+        public static boolean asyncOdometry = true; // false = integrate once per loop in periodic()
+        // One sample per DRIVE/STEER feedback frame (and Pigeon yaw frame, also 10ms). Sampling any
+        // faster only integrates the same frame again.
+        public static double odometryFrequency = 1000.0 / StatusFrameProfile.DRIVE.getFeedbackPeriod(); // hz
+        public static double poseHistoryWindow = 1.5; // seconds of pose kept for getPoseAt()
+        // Async samples logged per loop. Two arrive in a normal loop, extras wait in the ring for the next one.
+        public static final int odometryLogSamples = 4;
+
+        /* Chassis Velocity Filter */
+        public static final double velocityFilterAlpha = 0.5; // 1 = raw forward kinematics
+        public static final double velocityFilterBeta = 0.1;
+
+        /* JIT Warm-up, runs while disabled */
+        public static int warmupIterations = 5000; // synthetic control ticks before we call it warm
+        public static double warmupBudgetMs = 4; // per disabledPeriodic() call
+
         /* Neutral Modes */
         public static NeutralMode angleNeutralMode = NeutralMode.Coast;
         public static NeutralMode driveNeutralMode = NeutralMode.Brake;
@@ -149,6 +175,31 @@ public final class SwerveSettings {
                 kMaxAngularSpeedRadiansPerSecond, kMaxAngularSpeedRadiansPerSecondSquared);
       }
 
+    public static final class VisionConstants {
+        public static final boolean enabled = true;
+        public static final String poseEntry = "robot_pose";
+        public static final int queueSize = 32;
+
+        // Odometry is trusted this much, vision std devs are scaled up from the base values per measurement.
+        public static final double stateTranslationStdDev = 0.05; // meters
+        public static final double stateRotationStdDev = Units.degreesToRadians(1);
+        public static final double baseTranslationStdDev = 0.3; // meters
+        public static final double baseRotationStdDev = Units.degreesToRadians(15);
+
+        /* Rejection Gate */
+        public static final double maxCorrectionDistance = 1.5; // meters from the current estimate
+        // Consecutive out of gate measurements, each this close to the one before, that mean the estimate is what's wrong.
+        public static final int recoveryMeasurements = 5;
+        public static final double recoveryConsistencyDistance = 0.5; // meters
+        public static final double recoveryMaxGap = 0.5; // seconds between them
+        public static final double maxMeasurementAge = 1.0; // seconds, must fit inside the estimator's history
+        public static final double fieldLength = 16.54; // meters
+        public static final double fieldWidth = 8.02; // meters
+      }
+
+      // Estimated heap the trajectory cache may hold before least recently used paths are dropped.
+      public static final long trajectoryCacheBudget = 4 * 1024 * 1024; // bytes
+
       public enum PATH_LIST {
         Path1("Path1", new PathConstraints(2, 2)),
         Path2("Path2", new PathConstraints(2, 2)),
@@ -0,0 +1,194 @@
+package frc.swervelib.util;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+import com.pathplanner.lib.PathPoint;
+import com.pathplanner.lib.controllers.PPHolonomicDriveController;
+
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.bd_util.BDManager;
+import frc.bd_util.BDUpdatable;
+import frc.bd_util.UpdateRate;
+import frc.swervelib.math.ChassisVelocityEstimator;
+import frc.swervelib.math.Conversions;
+import frc.swervelib.math.SwerveKinematicsEngine;
+
+/**
+ * Runs the drive's hot paths with made up inputs while the robot is disabled, so the JIT has
+ * compiled them before the first enabled loop instead of during it.<p>
+ * Every object here is a private scratch copy (kinematics engine, pose estimator, velocity filter,
+ * pose history, path controller), nothing touches the real drive state and no motor is ever
+ * commanded. Each {@link #run()} spends at most {@link SwerveSettings.Swerve#warmupBudgetMs} and
+ * stops for good after {@link SwerveSettings.Swerve#warmupIterations} ticks.
+ * {@link #loopFinished(long, boolean)} records how long the first enabled loop took.
+ */
+public class SwerveWarmup implements BDUpdatable {
+    private static final double DT = 0.02;
+
+    private final SwerveKinematicsEngine engine = new SwerveKinematicsEngine(SwerveSettings.Swerve.moduleTranslations);
+    private final ChassisVelocityEstimator velocity = new ChassisVelocityEstimator(engine, SwerveSettings.Swerve.velocityFilterAlpha, SwerveSettings.Swerve.velocityFilterBeta);
+    private final PoseHistory history = new PoseHistory(SwerveSettings.Swerve.poseHistoryWindow, DT);
+    private final SwerveModulePosition[] positions = new SwerveModulePosition[4];
+    private final SwerveModuleState[] states = new SwerveModuleState[4];
+    private final double[] speeds = new double[4];
+    private final double[] angles = new double[4];
+    private final double[] distances = new double[4];
+    private final double[] optimized = new double[2];
+    private final double[] pose_out = new double[3];
+    private final SwerveDrivePoseEstimator estimator;
+    private final PathPlannerTrajectory trajectory;
+    private final PPHolonomicDriveController controller = new PPHolonomicDriveController(
+        new PIDController(2.5, 0, 0), new PIDController(2.5, 0, 0), new PIDController(0.5, 0, 0));
+
+    private int iterations = 0;
+    private double time = 0.0;
+    private long warm_micros = 0;
+    private double first_enabled_loop_ms = Double.NaN;
+
+    public SwerveWarmup() {
+        for (int i = 0; i < 4; i++) {
+            positions[i] = new SwerveModulePosition();
+            states[i] = new SwerveModuleState();
+        }
+        estimator = new SwerveDrivePoseEstimator(SwerveSettings.Swerve.swerveKinematics, new Rotation2d(), positions, new Pose2d());
+
+        // A small made up path, so the follower code gets compiled without loading a real one.
+        trajectory = PathPlanner.generatePath(
+            new PathConstraints(2, 2),
+            new PathPoint(new Translation2d(0, 0), Rotation2d.fromDegrees(0), Rotation2d.fromDegrees(0)),
+            new PathPoint(new Translation2d(2, 1), Rotation2d.fromDegrees(45), Rotation2d.fromDegrees(90))
+        );
+
+        BDManager.getInstance().register(this);
+    }
+
+    /**
+     * Runs warm-up ticks until the time budget for this call runs out. Only call while disabled.
+     */
+    public void run() {
+        if (isWarm()) {
+            return;
+        }
+
+        long start = RobotController.getFPGATime();
+        long budget = (long) (SwerveSettings.Swerve.warmupBudgetMs * 1000);
+        while (iterations < SwerveSettings.Swerve.warmupIterations && RobotController.getFPGATime() - start < budget) {
+            tick();
+            iterations++;
+        }
+        warm_micros += RobotController.getFPGATime() - start;
+
+        if (isWarm()) {
+            System.out.println(String.format("[SwerveWarmup] warm after %d iterations, %.0f ms of warm-up", iterations, warm_micros / 1000.0));
+        }
+    }
+
+    /**
+     * One synthetic control tick: teleop kinematics, path following, module optimization, unit
+     * conversions and odometry, in the same order the real loop does them.
+     */
+    private void tick() {
+        time += DT;
+        double phase = iterations * 0.05;
+
+        // Teleop drive()
+        engine.toModuleStatesFieldRelative(Math.sin(phase), Math.cos(phase), Math.sin(phase * 0.5), phase * 10);
+        engine.desaturate(SwerveSettings.Swerve.maxSpeed);
+        for (int i = 0; i < 4; i++) {
+            engine.optimize(i, phase * 20 + i * 90);
+        }
+
+        // Path following, wrapping around the made up path.
+        double t = time % trajectory.getTotalTimeSeconds();
+        PathPlannerState reference = (PathPlannerState) trajectory.sample(t);
+        ChassisSpeeds speeds_out = controller.calculate(estimator.getEstimatedPosition(), reference);
+        SwerveModuleState[] path_states = SwerveSettings.Swerve.swerveKinematics.toSwerveModuleStates(speeds_out);
+        engine.loadStates(path_states);
+        engine.desaturate(SwerveSettings.Swerve.maxSpeed);
+
+        for (int i = 0; i < 4; i++) {
+            // Both optimize variants, and the conversions setOptimizedState() and the sensors use.
+            CTREModuleState.optimize(engine.getSpeed(i), engine.getAngleDegrees(i), angles[i], optimized);
+            states[i].speedMetersPerSecond = optimized[0];
+            states[i].angle = Rotation2d.fromDegrees(optimized[1]);
+            CTREModuleState.optimize(states[i], Rotation2d.fromDegrees(angles[i]));
+
+            double angle_counts = Conversions.degreesToFalcon(optimized[1], SwerveSettings.Swerve.angleGearRatio);
+            double velocity_counts = Conversions.MPSToFalcon(optimized[0], SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+            distances[i] += optimized[0] * DT;
+            double distance_counts = distances[i] / SwerveSettings.Swerve.wheelCircumference * SwerveSettings.Swerve.driveGearRatio * 2048.0;
+
+            angles[i] = Conversions.falconToDegrees(angle_counts, SwerveSettings.Swerve.angleGearRatio);
+            speeds[i] = Conversions.falconToMPS(velocity_counts, SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+            positions[i].distanceMeters = Conversions.falconToMeters(distance_counts, SwerveSettings.Swerve.wheelCircumference, SwerveSettings.Swerve.driveGearRatio);
+            positions[i].angle = Rotation2d.fromDegrees(angles[i]);
+        }
+
+        // Odometry, velocity estimate and pose history from periodic().
+        estimator.updateWithTime(time, reference.holonomicRotation, positions);
+        Pose2d pose = estimator.getEstimatedPosition();
+        velocity.update(time, speeds, angles);
+        history.addSample(time, pose);
+        history.sample(time - 0.1, pose_out);
+    }
+
+    /**
+     * Call at the end of every robot loop. The first enabled loop after warm-up (or instead of it)
+     * gets its duration recorded.
+     * @param loop_micros how long the loop took
+     * @param enabled whether the robot was enabled during it
+     */
+    public void loopFinished(long loop_micros, boolean enabled) {
+        if (enabled && Double.isNaN(first_enabled_loop_ms)) {
+            first_enabled_loop_ms = loop_micros / 1000.0;
+            System.out.println(String.format("[SwerveWarmup] first enabled loop took %.2f ms (%s)",
+                first_enabled_loop_ms, isWarm() ? "warm" : "not warm, " + iterations + " iterations"));
+        }
+    }
+
+    /**
+     * @return true once every warm-up iteration has run
+     */
+    public boolean isWarm() {
+        return iterations >= SwerveSettings.Swerve.warmupIterations;
+    }
+
+    /**
+     * @return how long the first enabled loop took in milliseconds, NaN until it happens
+     */
+    public double getFirstEnabledLoopMs() {
+        return first_enabled_loop_ms;
+    }
+
+    public void update() {
+
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.ONE_HZ;
+    }
+
+    public String getID() {
+        return "SwerveWarmup";
+    }
+
+    public String getStatus() {
+        String status = isWarm()
+            ? String.format("warm (%d iterations, %.0f ms)", iterations, warm_micros / 1000.0)
+            : "warming " + iterations + "/" + SwerveSettings.Swerve.warmupIterations;
+        if (!Double.isNaN(first_enabled_loop_ms)) {
+            status += String.format(", first enabled loop %.2f ms", first_enabled_loop_ms);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,215 @@
+package frc.swervelib.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.pathplanner.lib.PathPlannerTrajectory;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
+import frc.bd_util.BDManager;
+import frc.bd_util.BDUpdatable;
+import frc.bd_util.UpdateRate;
+import frc.swervelib.util.SwerveSettings.PATH_LIST;
+
+/**
+ * Loads {@link PATH_LIST} trajectories the first time they're asked for instead of all of them at
+ * boot, and keeps them under a memory budget.<p>
+ * Entries are kept in least recently used order. Once the estimated size of everything cached
+ * goes over the budget, the least recently used trajectories are dropped (anything still running
+ * keeps its own reference). {@link #prefetch(PATH_LIST...)} loads paths on a background thread
+ * ahead of time, so the selected auto is ready before it's needed. A path already being loaded
+ * is never loaded twice, {@link #get(PATH_LIST)} just waits for it.
+ */
+public class TrajectoryCache implements BDUpdatable {
+    // Rough heap cost of one PathPlannerState with its pose and rotations.
+    private static final long BYTES_PER_STATE = 200;
+
+    private final TrajectoryLoader loader;
+    private final long budget_bytes;
+
+    // Guarded by this. Access ordered, so iteration starts at the least recently used.
+    private final LinkedHashMap<PATH_LIST, CompletableFuture<PathPlannerTrajectory>> entries =
+        new LinkedHashMap<PATH_LIST, CompletableFuture<PathPlannerTrajectory>>(16, 0.75f, true);
+    private long cached_bytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long prefetches = 0;
+    private long evictions = 0;
+    private long loads = 0;
+    private double total_load_ms = 0.0;
+    private double max_load_ms = 0.0;
+
+    private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TrajectoryPrefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param loader where trajectories come from
+     * @param budget_bytes estimated heap the cached trajectories may use before the oldest are dropped
+     */
+    public TrajectoryCache(TrajectoryLoader loader, long budget_bytes) {
+        this.loader = loader;
+        this.budget_bytes = budget_bytes;
+
+        ShuffleboardLayout layout = BDManager.getInstance().getInstanceManagerialTab()
+        .getLayout("Trajectory Cache", BuiltInLayouts.kList)
+        .withSize(2, 3);
+        layout.addDouble("Hits", this::getHits);
+        layout.addDouble("Misses", this::getMisses);
+        layout.addDouble("Evictions", this::getEvictions);
+        layout.addDouble("Avg Load ms", this::getAverageLoadMs);
+        layout.addDouble("Max Load ms", this::getMaxLoadMs);
+        layout.addDouble("Cached KB", () -> getCachedBytes() / 1024.0);
+
+        BDManager.getInstance().register(this);
+    }
+
+    /**
+     * Gets a trajectory, loading it on this thread if it isn't cached or already being prefetched.
+     * @param path the path
+     * @return the trajectory
+     */
+    public PathPlannerTrajectory get(PATH_LIST path) {
+        CompletableFuture<PathPlannerTrajectory> future;
+        boolean load_here = false;
+        synchronized (this) {
+            future = entries.get(path);
+            if (future != null) {
+                hits++;
+            } else {
+                misses++;
+                future = new CompletableFuture<PathPlannerTrajectory>();
+                entries.put(path, future);
+                load_here = true;
+            }
+        }
+
+        if (load_here) {
+            load(path, future);
+        }
+        return future.join();
+    }
+
+    /**
+     * Starts loading paths in the background. Paths already cached or loading are skipped.
+     * @param paths the paths that are about to be needed
+     */
+    public void prefetch(PATH_LIST... paths) {
+        for (PATH_LIST path : paths) {
+            CompletableFuture<PathPlannerTrajectory> future;
+            synchronized (this) {
+                if (entries.containsKey(path)) {
+                    // Still counts as a use, so it moves to the back of the eviction order.
+                    entries.get(path);
+                    continue;
+                }
+                prefetches++;
+                future = new CompletableFuture<PathPlannerTrajectory>();
+                entries.put(path, future);
+            }
+            prefetcher.execute(() -> load(path, future));
+        }
+    }
+
+    private void load(PATH_LIST path, CompletableFuture<PathPlannerTrajectory> future) {
+        long start = RobotController.getFPGATime();
+        PathPlannerTrajectory trajectory;
+        try {
+            trajectory = loader.load(path);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                entries.remove(path, future);
+            }
+            future.completeExceptionally(e);
+            return;
+        }
+        double ms = (RobotController.getFPGATime() - start) / 1000.0;
+
+        synchronized (this) {
+            loads++;
+            total_load_ms += ms;
+            max_load_ms = Math.max(max_load_ms, ms);
+            if (entries.get(path) == future) {
+                cached_bytes += sizeOf(trajectory);
+                evict(path);
+            }
+        }
+        future.complete(trajectory);
+    }
+
+    /**
+     * Drops least recently used, finished entries until the cache fits in the budget. Never drops
+     * the entry that was just loaded, or anything still loading.
+     */
+    private void evict(PATH_LIST keep) {
+        Iterator<Map.Entry<PATH_LIST, CompletableFuture<PathPlannerTrajectory>>> it = entries.entrySet().iterator();
+        while (cached_bytes > budget_bytes && it.hasNext()) {
+            Map.Entry<PATH_LIST, CompletableFuture<PathPlannerTrajectory>> entry = it.next();
+            if (entry.getKey() == keep || !entry.getValue().isDone() || entry.getValue().isCompletedExceptionally()) {
+                continue;
+            }
+            cached_bytes -= sizeOf(entry.getValue().join());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(PathPlannerTrajectory trajectory) {
+        return trajectory.getStates().size() * BYTES_PER_STATE;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return average time a load took, prefetched or not, in milliseconds
+     */
+    public synchronized double getAverageLoadMs() {
+        return loads == 0 ? 0.0 : total_load_ms / loads;
+    }
+
+    public synchronized double getMaxLoadMs() {
+        return max_load_ms;
+    }
+
+    /**
+     * @return estimated heap used by the cached trajectories, in bytes
+     */
+    public synchronized long getCachedBytes() {
+        return cached_bytes;
+    }
+
+    public void update() {
+        loader.publish();
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.TEN_HZ;
+    }
+
+    public String getID() {
+        return "TrajectoryCache";
+    }
+
+    public synchronized String getStatus() {
+        return entries.size() + " cached, " + hits + " hits, " + misses + " misses, " + prefetches + " prefetched";
+    }
+}
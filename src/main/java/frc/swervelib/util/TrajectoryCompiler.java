@@ -0,0 +1,57 @@
+package frc.swervelib.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+
+import frc.swervelib.util.SwerveSettings.PATH_LIST;
+
+/**
+ * Deploy step, run by the {@code compileTrajectories} Gradle task on the development machine.
+ * Generates every {@link PATH_LIST} path from its PathPlanner JSON and writes it as a
+ * {@link TrajectoryFile} into build/trajectories, which gets deployed to the robot's trajectories
+ * directory, so the robot doesn't have to generate them at boot.<p>
+ * Paths with event markers or stop events are skipped, the binary format doesn't store them and
+ * the robot falls back to JSON for those.
+ */
+public final class TrajectoryCompiler {
+    private TrajectoryCompiler() {}
+
+    /**
+     * @param args output directory, then the PathPlanner directory
+     */
+    public static void main(String[] args) throws IOException {
+        File out_dir = new File(args[0]);
+        File path_dir = new File(args[1]);
+        if (!out_dir.isDirectory() && !out_dir.mkdirs()) {
+            throw new IOException("Could not create " + out_dir);
+        }
+
+        for (PATH_LIST path : PATH_LIST.values()) {
+            File out = new File(out_dir, path.toString() + TrajectoryFile.EXTENSION);
+
+            long start = System.nanoTime();
+            PathPlannerTrajectory trajectory = PathPlanner.loadPath(path.toString(), path.getConstraints());
+            double generate_ms = (System.nanoTime() - start) / 1e6;
+
+            if (trajectory == null) {
+                throw new IOException("PathPlanner could not load " + path);
+            }
+            if (!trajectory.getMarkers().isEmpty()
+                || !trajectory.getStartStopEvent().names.isEmpty()
+                || !trajectory.getEndStopEvent().names.isEmpty()) {
+                // Not representable, make sure an old file can't be picked up instead of the JSON.
+                out.delete();
+                System.out.println("[compileTrajectories] " + path + ": has events, left as JSON");
+                continue;
+            }
+
+            long hash = TrajectoryFile.sourceHash(new File(path_dir, path.toString() + ".path"), path.getConstraints());
+            TrajectoryFile.write(out, trajectory, hash, generate_ms);
+            System.out.println(String.format("[compileTrajectories] %s: %d states, generated in %.1f ms",
+                path, trajectory.getStates().size(), generate_ms));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package frc.swervelib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.pathplanner.lib.PathConstraints;
+import com.pathplanner.lib.PathPlannerTrajectory;
+import com.pathplanner.lib.PathPlannerTrajectory.PathPlannerState;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.Trajectory;
+
+/**
+ * Binary trajectory files, written at build time by {@link TrajectoryCompiler} and memory mapped
+ * at boot instead of generating the path from JSON.<p>
+ * Layout, big endian:
+ * <pre>
+ * int    magic          'BDTR'
+ * int    version        {@link #VERSION}
+ * long   source hash    CRC32 of the .path file, its constraints and the version
+ * double generate ms    how long JSON generation took on the build machine
+ * int    state count
+ * int    fields         doubles per state, {@link #FIELDS}
+ * long   payload crc    CRC32 of everything after the header
+ * double[state count * fields] states
+ * </pre>
+ * Each state is {time, velocity, acceleration, x, y, heading, curvature, angular velocity,
+ * holonomic rotation, holonomic angular velocity}, angles in radians.
+ */
+public final class TrajectoryFile {
+    public static final int MAGIC = 0x42445452;
+    public static final int VERSION = 1;
+    public static final int FIELDS = 10;
+    public static final int HEADER_BYTES = 40;
+    public static final String EXTENSION = ".bdtraj";
+
+    private TrajectoryFile() {}
+
+    /**
+     * A trajectory loaded from a binary file. Behaves like any other {@link PathPlannerTrajectory},
+     * without markers or stop events.
+     */
+    public static class CompiledTrajectory extends PathPlannerTrajectory {
+        private final double total_time;
+        private final double generate_ms;
+
+        private CompiledTrajectory(List<PathPlannerState> states, double generate_ms) {
+            super();
+            getStates().addAll(states);
+            this.total_time = states.isEmpty() ? 0.0 : states.get(states.size() - 1).timeSeconds;
+            this.generate_ms = generate_ms;
+        }
+
+        @Override
+        public double getTotalTimeSeconds() {
+            return total_time;
+        }
+
+        /**
+         * @return How long the JSON generation took on the build machine, for comparison.
+         */
+        public double getGenerateMs() {
+            return generate_ms;
+        }
+    }
+
+    /**
+     * Fingerprint of everything the compiled trajectory depends on. If it doesn't match the one in
+     * the file, the file is stale.
+     * @param path_file the PathPlanner .path file
+     * @param constraints the constraints the path is generated with
+     * @return the hash
+     * @throws IOException if the .path file can't be read
+     */
+    public static long sourceHash(File path_file, PathConstraints constraints) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(Files.readAllBytes(path_file.toPath()));
+        ByteBuffer extra = ByteBuffer.allocate(20);
+        extra.putDouble(constraints.maxVelocity);
+        extra.putDouble(constraints.maxAcceleration);
+        extra.putInt(VERSION);
+        crc.update(extra.array());
+        return crc.getValue();
+    }
+
+    /**
+     * Writes a trajectory.
+     * @param out file to write
+     * @param trajectory the generated trajectory
+     * @param source_hash from {@link #sourceHash(File, PathConstraints)}
+     * @param generate_ms how long generating it took
+     * @throws IOException if the file can't be written
+     */
+    public static void write(File out, PathPlannerTrajectory trajectory, long source_hash, double generate_ms) throws IOException {
+        List<Trajectory.State> states = trajectory.getStates();
+        ByteBuffer payload = ByteBuffer.allocate(states.size() * FIELDS * Double.BYTES);
+        for (Trajectory.State raw : states) {
+            PathPlannerState state = (PathPlannerState) raw;
+            payload.putDouble(state.timeSeconds);
+            payload.putDouble(state.velocityMetersPerSecond);
+            payload.putDouble(state.accelerationMetersPerSecondSq);
+            payload.putDouble(state.poseMeters.getX());
+            payload.putDouble(state.poseMeters.getY());
+            payload.putDouble(state.poseMeters.getRotation().getRadians());
+            payload.putDouble(state.curvatureRadPerMeter);
+            payload.putDouble(state.angularVelocityRadPerSec);
+            payload.putDouble(state.holonomicRotation.getRadians());
+            payload.putDouble(state.holonomicAngularVelocityRadPerSec);
+        }
+        payload.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(source_hash);
+        header.putDouble(generate_ms);
+        header.putInt(states.size());
+        header.putInt(FIELDS);
+        header.putLong(crc.getValue());
+        header.flip();
+
+        try (RandomAccessFile file = new RandomAccessFile(out, "rw"); FileChannel channel = file.getChannel()) {
+            channel.truncate(0);
+            channel.write(header);
+            channel.write(payload);
+        }
+    }
+
+    /**
+     * Memory maps and reads a trajectory.
+     * @param in the binary file
+     * @param source_hash what the file's source hash has to be, from {@link #sourceHash(File, PathConstraints)}
+     * @return the trajectory, or null if the file is missing, stale, from another version or corrupt
+     */
+    public static CompiledTrajectory read(File in, long source_hash) {
+        if (!in.isFile() || in.length() < HEADER_BYTES) {
+            return null;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(in, "r"); FileChannel channel = file.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != source_hash) {
+                return null;
+            }
+            double generate_ms = buffer.getDouble();
+            int count = buffer.getInt();
+            int fields = buffer.getInt();
+            long payload_crc = buffer.getLong();
+            if (fields != FIELDS || buffer.remaining() != (long) count * FIELDS * Double.BYTES) {
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != payload_crc) {
+                return null;
+            }
+
+            ArrayList<PathPlannerState> states = new ArrayList<PathPlannerState>(count);
+            for (int i = 0; i < count; i++) {
+                PathPlannerState state = new PathPlannerState();
+                state.timeSeconds = buffer.getDouble();
+                state.velocityMetersPerSecond = buffer.getDouble();
+                state.accelerationMetersPerSecondSq = buffer.getDouble();
+                double x = buffer.getDouble();
+                double y = buffer.getDouble();
+                state.poseMeters = new Pose2d(x, y, new Rotation2d(buffer.getDouble()));
+                state.curvatureRadPerMeter = buffer.getDouble();
+                state.angularVelocityRadPerSec = buffer.getDouble();
+                state.holonomicRotation = new Rotation2d(buffer.getDouble());
+                state.holonomicAngularVelocityRadPerSec = buffer.getDouble();
+                states.add(state);
+            }
+            return new CompiledTrajectory(states, generate_ms);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package frc.swervelib.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.pathplanner.lib.PathPlanner;
+import com.pathplanner.lib.PathPlannerTrajectory;
+
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.shuffleboard.BuiltInLayouts;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardLayout;
+import frc.bd_util.BDManager;
+import frc.swervelib.util.SwerveSettings.PATH_LIST;
+import frc.swervelib.util.TrajectoryFile.CompiledTrajectory;
+
+/**
+ * Loads {@link PATH_LIST} trajectories, from the precompiled binary files when they're there and
+ * up to date, otherwise by generating them from the PathPlanner JSON like before. Every load is
+ * timed and shown on the BDManager tab, next to how long JSON generation took on the build
+ * machine, so the two can be compared.<p>
+ * {@link #load(PATH_LIST)} is safe to call from any thread. The dashboard is only touched from
+ * {@link #publish()}, which belongs on the main thread.
+ */
+public class TrajectoryLoader {
+    private final File path_dir;
+    private final File binary_dir;
+    private final ShuffleboardLayout layout;
+    private final Map<PATH_LIST, String> results = new ConcurrentHashMap<PATH_LIST, String>();
+    private final Set<PATH_LIST> shown = EnumSet.noneOf(PATH_LIST.class);
+
+    public TrajectoryLoader() {
+        this.path_dir = new File(Filesystem.getDeployDirectory(), "pathplanner");
+        this.binary_dir = new File(Filesystem.getDeployDirectory(), "trajectories");
+        this.layout = BDManager.getInstance().getInstanceManagerialTab()
+        .getLayout("Trajectory Loading", BuiltInLayouts.kList)
+        .withSize(2, 3);
+    }
+
+    /**
+     * Loads one path.
+     * @param path the path to load
+     * @return the trajectory
+     */
+    public PathPlannerTrajectory load(PATH_LIST path) {
+        long start = RobotController.getFPGATime();
+
+        CompiledTrajectory compiled = null;
+        try {
+            long hash = TrajectoryFile.sourceHash(new File(path_dir, path.toString() + ".path"), path.getConstraints());
+            compiled = TrajectoryFile.read(new File(binary_dir, path.toString() + TrajectoryFile.EXTENSION), hash);
+        } catch (IOException e) {
+            // No .path file to check against, PathPlanner will report it below.
+        }
+
+        PathPlannerTrajectory trajectory;
+        String result;
+        if (compiled != null) {
+            trajectory = compiled;
+            result = String.format("binary %.1f ms (JSON was %.1f ms)", (RobotController.getFPGATime() - start) / 1000.0, compiled.getGenerateMs());
+        } else {
+            trajectory = PathPlanner.loadPath(path.toString(), path.getConstraints());
+            result = String.format("JSON %.1f ms", (RobotController.getFPGATime() - start) / 1000.0);
+        }
+
+        System.out.println("[TrajectoryLoader] " + path + ": " + result);
+        results.put(path, result);
+        return trajectory;
+    }
+
+    /**
+     * Adds dashboard entries for paths loaded since the last call. Main thread only.
+     */
+    public void publish() {
+        if (shown.size() == results.size()) {
+            return;
+        }
+        for (PATH_LIST path : results.keySet()) {
+            if (shown.add(path)) {
+                layout.addString(path.toString(), () -> results.get(path));
+            }
+        }
+    }
+}
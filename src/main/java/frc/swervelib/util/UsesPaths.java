@@ -0,0 +1,34 @@
+package frc.swervelib.util;
+
+import java.util.LinkedHashSet;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import frc.swervelib.util.SwerveSettings.PATH_LIST;
+
+/**
+ * An auto or path command that knows which {@link PATH_LIST} paths it will run, so they can be
+ * loaded while it's still being picked on the dashboard.
+ */
+public interface UsesPaths {
+    /**
+     * @return every path this command runs, in the order it runs them
+     */
+    PATH_LIST[] getPaths();
+
+    /**
+     * Collects the paths of several commands, for autos built out of path commands.
+     * @param commands the auto's commands, ones that don't use paths are skipped
+     * @return every path they run, in order, without repeats
+     */
+    static PATH_LIST[] pathsOf(Command... commands) {
+        LinkedHashSet<PATH_LIST> paths = new LinkedHashSet<PATH_LIST>();
+        for (Command command : commands) {
+            if (command instanceof UsesPaths) {
+                for (PATH_LIST path : ((UsesPaths) command).getPaths()) {
+                    paths.add(path);
+                }
+            }
+        }
+        return paths.toArray(new PATH_LIST[0]);
+    }
+}
@@ -0,0 +1,229 @@
+package frc.swervelib.util;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableEvent.Kind;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableType;
+import edu.wpi.first.networktables.NetworkTableValue;
+import edu.wpi.first.wpilibj.Timer;
+import frc.bd_util.BDManager;
+import frc.bd_util.BDUpdatable;
+import frc.bd_util.UpdateRate;
+import frc.bd_util.CameraNetworkTable;
+import frc.swervelib.util.SwerveSettings.VisionConstants;
+
+/**
+ * Feeds robot pose measurements from the image processing camera into a {@link SwerveDrivePoseEstimator}.<p>
+ * The coprocessor publishes {@code CameraTable/<camera id>/robot_pose} as
+ * {x meters, y meters, rotation degrees, latency ms, tag count, average tag distance meters}.
+ * Only the camera set with {@link CameraNetworkTable#setProcessedCamera(CameraNetworkTable)} is used.<p>
+ * The NetworkTables listener only parses and queues. Whoever owns the estimator calls
+ * {@link #applyPending(SwerveDrivePoseEstimator)}, which drains everything that arrived since the
+ * last call as one batch, oldest first. The estimator rewinds to the wheel odometry at each
+ * capture time, applies the correction and replays the newer odometry on top of it.<p>
+ * Measurements too far from the current estimate are normally rejected. That gate can't be allowed
+ * to lock vision out for good, since the estimate starts at the origin and can be knocked far off
+ * by a collision. So the fusion starts out recovering, and goes back to recovering after
+ * {@link VisionConstants#recoveryMeasurements} consecutive out of gate measurements that agree with
+ * each other. While recovering every plausible measurement is applied, until one lands inside the
+ * gate.
+ */
+public class VisionPoseFusion implements BDUpdatable {
+    // x, y, rotation, capture timestamp, tag count, average tag distance
+    private static final int FIELDS = 6;
+
+    private final ArrayBlockingQueue<double[]> pending = new ArrayBlockingQueue<double[]>(VisionConstants.queueSize);
+    private final double[][] batch = new double[VisionConstants.queueSize][];
+
+    // Touched from both the listener thread and the estimator thread.
+    private final AtomicLong accepted = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final AtomicLong overflowed = new AtomicLong(0);
+
+    // Estimator thread only.
+    private boolean recovering = true;
+    private int consistent_outliers = 0;
+    private double last_outlier_x = 0.0;
+    private double last_outlier_y = 0.0;
+    private double last_outlier_time = 0.0;
+    private volatile long recoveries = 0;
+
+    public VisionPoseFusion() {
+        NetworkTableInstance.getDefault().addListener(
+            new String[] {CameraNetworkTable.CameraTable.getPath() + "/"},
+            EnumSet.of(Kind.kValueAll),
+            this::onValue
+        );
+
+        BDManager.getInstance().register(this);
+    }
+
+    /**
+     * Runs on the NetworkTables listener thread. Parses the measurement and queues it, nothing else.
+     */
+    private void onValue(NetworkTableEvent event) {
+        CameraNetworkTable camera = CameraNetworkTable.getProcessedCamera();
+        if (camera == null || event.valueData == null) {
+            return;
+        }
+
+        String name = event.valueData.getTopic().getName();
+        if (!name.equals(camera.getNetworkTable().getPath() + "/" + VisionConstants.poseEntry)) {
+            return;
+        }
+
+        NetworkTableValue value = event.valueData.value;
+        if (value.getType() != NetworkTableType.kDoubleArray) {
+            rejected.incrementAndGet();
+            return;
+        }
+        double[] data = value.getDoubleArray();
+        if (data.length < FIELDS) {
+            rejected.incrementAndGet();
+            return;
+        }
+
+        // Value timestamps are in microseconds on the same clock as the FPGA. Take off the
+        // processing latency to get back to when the frame was actually captured.
+        double capture_time = value.getTime() / 1e6 - data[3] / 1000.0;
+        double[] measurement = new double[] {data[0], data[1], data[2], capture_time, data[4], data[5]};
+
+        if (!pending.offer(measurement)) {
+            // Full, make room by dropping the oldest. The newest frame is the most useful one.
+            pending.poll();
+            pending.offer(measurement);
+            overflowed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drains every queued measurement and applies the ones that pass the gate. Must be called from
+     * the thread that updates the estimator.
+     * @param estimator the pose estimator to correct
+     * @return how many measurements were applied, logged so replay knows the pose was corrected
+     */
+    public int applyPending(SwerveDrivePoseEstimator estimator) {
+        int count = 0;
+        double[] measurement;
+        while (count < batch.length && (measurement = pending.poll()) != null) {
+            batch[count++] = measurement;
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        // Bursts can arrive out of order, the estimator wants them oldest first.
+        Arrays.sort(batch, 0, count, (a, b) -> Double.compare(a[3], b[3]));
+
+        Pose2d current = estimator.getEstimatedPosition();
+        double now = Timer.getFPGATimestamp();
+        int applied = 0;
+
+        for (int i = 0; i < count; i++) {
+            double[] m = batch[i];
+            batch[i] = null;
+
+            if (!passesGate(m, current, now)) {
+                rejected.incrementAndGet();
+                continue;
+            }
+
+            // Trust measurements less the further away the tags are, and more when we see several.
+            double tag_count = m[4];
+            double distance = m[5];
+            double scale = 1 + (distance * distance) / tag_count;
+            double xy_std = VisionConstants.baseTranslationStdDev * scale;
+            // A single tag gives a poor heading, so effectively ignore its rotation.
+            double theta_std = tag_count > 1 ? VisionConstants.baseRotationStdDev * scale : 1e6;
+
+            estimator.addVisionMeasurement(
+                new Pose2d(m[0], m[1], Rotation2d.fromDegrees(m[2])),
+                m[3],
+                VecBuilder.fill(xy_std, xy_std, theta_std)
+            );
+            accepted.incrementAndGet();
+            applied++;
+        }
+        return applied;
+    }
+
+    private boolean passesGate(double[] m, Pose2d current, double now) {
+        if (m[4] < 1) {
+            return false;
+        }
+        // The estimator can't rewind past its own history, and the future is obviously wrong.
+        if (m[3] > now || now - m[3] > VisionConstants.maxMeasurementAge) {
+            return false;
+        }
+        if (m[0] < 0 || m[0] > VisionConstants.fieldLength || m[1] < 0 || m[1] > VisionConstants.fieldWidth) {
+            return false;
+        }
+
+        if (Math.hypot(m[0] - current.getX(), m[1] - current.getY()) <= VisionConstants.maxCorrectionDistance) {
+            // The estimate agrees with the camera again.
+            recovering = false;
+            consistent_outliers = 0;
+            return true;
+        }
+        if (recovering) {
+            return true;
+        }
+
+        // Out of the gate. One of these is noise, a run of them that agree is the estimate being wrong.
+        boolean consistent = consistent_outliers > 0
+            && m[3] - last_outlier_time <= VisionConstants.recoveryMaxGap
+            && Math.hypot(m[0] - last_outlier_x, m[1] - last_outlier_y) <= VisionConstants.recoveryConsistencyDistance;
+        consistent_outliers = consistent ? consistent_outliers + 1 : 1;
+        last_outlier_x = m[0];
+        last_outlier_y = m[1];
+        last_outlier_time = m[3];
+
+        if (consistent_outliers >= VisionConstants.recoveryMeasurements) {
+            recovering = true;
+            recoveries++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return How many measurements have been applied to the estimator.
+     */
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    /**
+     * @return How many measurements were malformed or failed the gate.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public void update() {
+
+    }
+
+    public UpdateRate getUpdateRate() {
+        return UpdateRate.ONE_HZ;
+    }
+
+    public String getID() {
+        return "VisionPoseFusion";
+    }
+
+    public String getStatus() {
+        return (recovering ? "RECOVERING, " : "") + "accepted " + accepted.get() + ", rejected " + rejected.get()
+            + (recoveries > 0 ? ", recovered " + recoveries + " times" : "")
+            + (overflowed.get() > 0 ? ", overflowed " + overflowed.get() : "");
+    }
+}
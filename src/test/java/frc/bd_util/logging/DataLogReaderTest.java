@@ -0,0 +1,241 @@
+package frc.bd_util.logging;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import frc.bd_util.logging.DataLogFormat.Encoding;
+
+/**
+ * Writes logs byte for byte the way {@link DataLogger} does and reads them back with
+ * {@link DataLogReader}. DataLogger itself needs the robot clock, so the writing is copied here.
+ */
+public class DataLogReaderTest {
+    private static final double EPSILON = 1e-9;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Mirrors DataLogger.start(), log(), beginBlock() and finishBlock().
+     */
+    private static class LogWriter {
+        private final String[] names;
+        private final Encoding[] encodings;
+        private final double[] resolutions;
+        private final long[] tracked;
+        private final ByteBuffer out = ByteBuffer.allocate(1 << 16);
+        private int block_start = -1;
+        private int block_records = 0;
+        private long last_timestamp = 0;
+
+        LogWriter(String[] names, Encoding[] encodings, double[] resolutions) {
+            this(names, encodings, resolutions, null);
+        }
+
+        // ordinals overrides the encoding byte written to the header, to make broken files.
+        LogWriter(String[] names, Encoding[] encodings, double[] resolutions, int[] ordinals) {
+            this.names = names;
+            this.encodings = encodings;
+            this.resolutions = resolutions;
+            this.tracked = new long[names.length];
+
+            int record_bytes = DataLogFormat.TIMESTAMP_BYTES;
+            out.putInt(DataLogFormat.MAGIC);
+            out.putInt(DataLogFormat.VERSION);
+            out.putLong(1234L);
+            out.putInt(names.length);
+            for (int i = 0; i < names.length; i++) {
+                byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+                out.putShort((short) name.length);
+                out.put(name);
+                out.put((byte) (ordinals != null ? ordinals[i] : encodings[i].ordinal()));
+                out.putDouble(resolutions[i]);
+                record_bytes += encodings[i].getBytes();
+            }
+            out.putInt(record_bytes);
+        }
+
+        void beginBlock(long now) {
+            block_start = out.position();
+            out.putInt(DataLogFormat.BLOCK_MAGIC);
+            out.putInt(0);
+            out.putLong(now);
+            out.putLong(now);
+            for (int i = 0; i < names.length; i++) {
+                if (encodings[i] == Encoding.DELTA) {
+                    out.putLong(tracked[i]);
+                }
+            }
+            block_records = 0;
+        }
+
+        void log(long now, double... values) {
+            out.putLong(now);
+            for (int i = 0; i < names.length; i++) {
+                switch (encodings[i]) {
+                    case DOUBLE:
+                        out.putDouble(values[i]);
+                        break;
+                    case FLOAT:
+                        out.putFloat((float) values[i]);
+                        break;
+                    case DELTA:
+                        long delta = Math.round(values[i] / resolutions[i]) - tracked[i];
+                        delta = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, delta));
+                        tracked[i] += delta;
+                        out.putShort((short) delta);
+                        break;
+                }
+            }
+            block_records++;
+            last_timestamp = now;
+        }
+
+        void finishBlock() {
+            out.putInt(block_start + 4, block_records);
+            out.putLong(block_start + 16, last_timestamp);
+        }
+
+        File write(File file) throws IOException {
+            Files.write(file.toPath(), Arrays.copyOf(out.array(), out.position()));
+            return file;
+        }
+    }
+
+    private static final String[] NAMES = {"drive/x", "drive/speed", "pdh/temp"};
+    private static final Encoding[] ENCODINGS = {Encoding.DOUBLE, Encoding.FLOAT, Encoding.DELTA};
+    private static final double[] RESOLUTIONS = {1.0, 1.0, 0.5};
+
+    // Two blocks of three records, 20 ms apart.
+    private File writeSample() throws IOException {
+        LogWriter writer = new LogWriter(NAMES, ENCODINGS, RESOLUTIONS);
+        writer.beginBlock(1_000_000);
+        writer.log(1_000_000, 0.125, 1.5, 30.0);
+        writer.log(1_020_000, 0.25, 2.5, 30.5);
+        writer.log(1_040_000, 0.375, 3.5, 31.0);
+        writer.finishBlock();
+        writer.beginBlock(1_060_000);
+        writer.log(1_060_000, 0.5, 4.5, 32.0);
+        writer.log(1_080_000, 0.625, 5.5, 32.5);
+        writer.log(1_100_000, 0.75, 6.5, 31.5);
+        writer.finishBlock();
+        return writer.write(folder.newFile("sample" + DataLogFormat.EXTENSION));
+    }
+
+    @Test
+    public void readsBackTheHeader() throws IOException {
+        try (DataLogReader reader = new DataLogReader(writeSample())) {
+            assertArrayEquals(NAMES, reader.getChannelNames());
+            assertEquals(Encoding.FLOAT, reader.getEncoding(1));
+            assertEquals(Encoding.DELTA, reader.getEncoding(2));
+            assertEquals(1234L, reader.getCreatedMillis());
+            assertEquals(2, reader.getChannel("pdh/temp"));
+            assertEquals(-1, reader.getChannel("missing"));
+        }
+    }
+
+    @Test
+    public void roundTripsEveryRecord() throws IOException {
+        try (DataLogReader reader = new DataLogReader(writeSample())) {
+            assertEquals(2, reader.getBlockCount());
+            assertEquals(6, reader.getRecordCount());
+            assertEquals(1_000_000, reader.getStartMicros());
+            assertEquals(1_100_000, reader.getEndMicros());
+
+            double[] temps = {30.0, 30.5, 31.0, 32.0, 32.5, 31.5};
+            DataLogReader.Cursor cursor = reader.cursor(0, new int[] {0, 1, 2});
+            for (int i = 0; i < 6; i++) {
+                assertTrue(cursor.next());
+                assertEquals(1_000_000 + i * 20_000, cursor.getTimestamp());
+                assertEquals(0.125 * (i + 1), cursor.get(0), EPSILON);
+                assertEquals(1.5 + i, cursor.get(1), EPSILON);
+                assertEquals(temps[i], cursor.get(2), EPSILON);
+            }
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void seeksIntoTheSecondBlock() throws IOException {
+        try (DataLogReader reader = new DataLogReader(writeSample())) {
+            // The DELTA channel has to be rebuilt from the block's keyframe, not from zero.
+            DataLogReader.Cursor cursor = reader.cursor(1_070_000, new int[] {2});
+            assertTrue(cursor.next());
+            assertEquals(1_080_000, cursor.getTimestamp());
+            assertEquals(32.5, cursor.get(0), EPSILON);
+        }
+    }
+
+    @Test
+    public void cachedIndexMatchesBuiltIndex() throws IOException {
+        File log = writeSample();
+        try (DataLogReader reader = new DataLogReader(log)) {
+            assertEquals(30.0, reader.getMin(2), EPSILON);
+        }
+        assertTrue(DataLogReader.indexFile(log).isFile());
+
+        try (DataLogReader reader = new DataLogReader(log)) {
+            assertEquals(2, reader.getBlockCount());
+            assertEquals(30.0, reader.getMin(2), EPSILON);
+            assertEquals(32.5, reader.getMax(2), EPSILON);
+            assertEquals(1_060_000, reader.findFirst(2, 32.0, 40.0, 0));
+            assertEquals(-1, reader.findFirst(0, 5.0, 10.0, 0));
+        }
+    }
+
+    @Test
+    public void ignoresABlockCutOffAtTheEnd() throws IOException {
+        LogWriter writer = new LogWriter(NAMES, ENCODINGS, RESOLUTIONS);
+        writer.beginBlock(1_000_000);
+        writer.log(1_000_000, 1.0, 1.0, 1.0);
+        writer.finishBlock();
+        writer.beginBlock(1_020_000);
+        writer.log(1_020_000, 2.0, 2.0, 2.0);
+        writer.finishBlock();
+        File log = writer.write(folder.newFile("cut" + DataLogFormat.EXTENSION));
+        byte[] bytes = Files.readAllBytes(log.toPath());
+        Files.write(log.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+
+        try (DataLogReader reader = new DataLogReader(log)) {
+            assertEquals(1, reader.getBlockCount());
+            assertEquals(1, reader.getRecordCount());
+        }
+    }
+
+    @Test
+    public void rejectsAnUnknownEncoding() throws IOException {
+        LogWriter writer = new LogWriter(NAMES, ENCODINGS, RESOLUTIONS, new int[] {0, 1, 7});
+        File log = writer.write(folder.newFile("bad" + DataLogFormat.EXTENSION));
+        try (DataLogReader reader = new DataLogReader(log)) {
+            fail("opened a log with encoding 7");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("pdh/temp"));
+        }
+    }
+
+    @Test
+    public void rejectsATruncatedHeader() throws IOException {
+        File log = new LogWriter(NAMES, ENCODINGS, RESOLUTIONS).write(folder.newFile("short" + DataLogFormat.EXTENSION));
+        byte[] bytes = Files.readAllBytes(log.toPath());
+        Files.write(log.toPath(), Arrays.copyOf(bytes, 30));
+        try (DataLogReader reader = new DataLogReader(log)) {
+            fail("opened a log that ends inside its header");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package frc.swervelib.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import frc.swervelib.util.CTREModuleState;
+
+/**
+ * Checks {@link SwerveKinematicsEngine} against the WPILib objects it replaces, over random
+ * requests and angles right at the wraps.
+ */
+public class SwerveKinematicsEngineTest {
+    private static final double SPEED_TOLERANCE = 1e-9;
+    private static final double ANGLE_TOLERANCE = 1e-7;
+    private static final int ITERATIONS = 10000;
+
+    // The robot's layout, plus an off center one so a symmetric shortcut can't hide a mistake.
+    private static final Translation2d[][] LAYOUTS = {
+        {
+            new Translation2d(0.263525, 0.301625),
+            new Translation2d(0.263525, -0.301625),
+            new Translation2d(-0.263525, 0.301625),
+            new Translation2d(-0.263525, -0.301625)
+        },
+        {
+            new Translation2d(0.4, 0.2),
+            new Translation2d(0.1, -0.35),
+            new Translation2d(-0.3, 0.25),
+            new Translation2d(-0.2, -0.1)
+        }
+    };
+
+    private static double angleError(double a, double b) {
+        return Math.abs(Math.IEEEremainder(a - b, 360.0));
+    }
+
+    private static void assertStatesMatch(SwerveModuleState[] expected, SwerveKinematicsEngine engine) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("speed of module " + i, expected[i].speedMetersPerSecond, engine.getSpeed(i), SPEED_TOLERANCE);
+            // The heading of a module that isn't moving is meaningless, except when it's held.
+            if (Math.abs(expected[i].speedMetersPerSecond) > 1e-6) {
+                assertTrue("angle of module " + i + ": " + expected[i].angle.getDegrees() + " vs " + engine.getAngleDegrees(i),
+                    angleError(expected[i].angle.getDegrees(), engine.getAngleDegrees(i)) < ANGLE_TOLERANCE);
+            }
+        }
+    }
+
+    private static double randomSpeed(Random random, double max) {
+        return random.nextDouble() * 2.0 * max - max;
+    }
+
+    @Test
+    public void inverseKinematicsMatchesWPILib() {
+        Random random = new Random(4645);
+        for (Translation2d[] layout : LAYOUTS) {
+            SwerveDriveKinematics kinematics = new SwerveDriveKinematics(layout);
+            SwerveKinematicsEngine engine = new SwerveKinematicsEngine(layout);
+            for (int n = 0; n < ITERATIONS; n++) {
+                double vx = randomSpeed(random, 4.0);
+                double vy = randomSpeed(random, 4.0);
+                double omega = randomSpeed(random, 6.0);
+
+                SwerveModuleState[] expected = kinematics.toSwerveModuleStates(new ChassisSpeeds(vx, vy, omega));
+                engine.toModuleStates(vx, vy, omega);
+                assertStatesMatch(expected, engine);
+            }
+        }
+    }
+
+    @Test
+    public void fieldRelativeMatchesWPILib() {
+        Random random = new Random(4646);
+        for (Translation2d[] layout : LAYOUTS) {
+            SwerveDriveKinematics kinematics = new SwerveDriveKinematics(layout);
+            SwerveKinematicsEngine engine = new SwerveKinematicsEngine(layout);
+            for (int n = 0; n < ITERATIONS; n++) {
+                double vx = randomSpeed(random, 4.0);
+                double vy = randomSpeed(random, 4.0);
+                double omega = randomSpeed(random, 6.0);
+                // Continuous gyro yaw, several turns either way.
+                double yaw = randomSpeed(random, 1080.0);
+
+                SwerveModuleState[] expected = kinematics.toSwerveModuleStates(
+                    ChassisSpeeds.fromFieldRelativeSpeeds(vx, vy, omega, Rotation2d.fromDegrees(yaw)));
+                engine.toModuleStatesFieldRelative(vx, vy, omega, yaw);
+                assertStatesMatch(expected, engine);
+            }
+        }
+    }
+
+    @Test
+    public void zeroRequestHoldsHeadings() {
+        Random random = new Random(4647);
+        Translation2d[] layout = LAYOUTS[0];
+        SwerveDriveKinematics kinematics = new SwerveDriveKinematics(layout);
+        SwerveKinematicsEngine engine = new SwerveKinematicsEngine(layout);
+        for (int n = 0; n < 1000; n++) {
+            double vx = randomSpeed(random, 4.0);
+            double vy = randomSpeed(random, 4.0);
+            double omega = randomSpeed(random, 6.0);
+            SwerveModuleState[] moving = kinematics.toSwerveModuleStates(new ChassisSpeeds(vx, vy, omega));
+            engine.toModuleStates(vx, vy, omega);
+
+            SwerveModuleState[] stopped = kinematics.toSwerveModuleStates(new ChassisSpeeds());
+            engine.toModuleStates(0.0, 0.0, 0.0);
+            for (int i = 0; i < layout.length; i++) {
+                assertEquals(0.0, stopped[i].speedMetersPerSecond, 0.0);
+                assertEquals(0.0, engine.getSpeed(i), 0.0);
+                assertTrue(angleError(moving[i].angle.getDegrees(), stopped[i].angle.getDegrees()) < ANGLE_TOLERANCE);
+                assertTrue(angleError(stopped[i].angle.getDegrees(), engine.getAngleDegrees(i)) < ANGLE_TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void desaturateMatchesWPILib() {
+        Random random = new Random(4648);
+        double max_speed = 1.5;
+        for (Translation2d[] layout : LAYOUTS) {
+            SwerveDriveKinematics kinematics = new SwerveDriveKinematics(layout);
+            SwerveKinematicsEngine engine = new SwerveKinematicsEngine(layout);
+            for (int n = 0; n < ITERATIONS; n++) {
+                double vx = randomSpeed(random, 4.0);
+                double vy = randomSpeed(random, 4.0);
+                double omega = randomSpeed(random, 6.0);
+
+                SwerveModuleState[] expected = kinematics.toSwerveModuleStates(new ChassisSpeeds(vx, vy, omega));
+                SwerveDriveKinematics.desaturateWheelSpeeds(expected, max_speed);
+                engine.toModuleStates(vx, vy, omega);
+                engine.desaturate(max_speed);
+                assertStatesMatch(expected, engine);
+                for (int i = 0; i < layout.length; i++) {
+                    assertTrue(Math.abs(engine.getSpeed(i)) <= max_speed + SPEED_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Current angles are continuous, and a quarter of them sit right on a multiple of 180 where
+     * the optimized target crosses between scopes.
+     */
+    private static double randomCurrentAngle(Random random) {
+        if (random.nextInt(4) == 0) {
+            return (random.nextInt(13) - 6) * 180.0 + (random.nextInt(3) - 1) * 1e-9;
+        }
+        return randomSpeed(random, 1080.0);
+    }
+
+    @Test
+    public void optimizeMatchesObjectVersion() {
+        Random random = new Random(4649);
+        Translation2d[] layout = LAYOUTS[0];
+        SwerveDriveKinematics kinematics = new SwerveDriveKinematics(layout);
+        SwerveKinematicsEngine engine = new SwerveKinematicsEngine(layout);
+        for (int n = 0; n < ITERATIONS; n++) {
+            double vx = randomSpeed(random, 4.0);
+            double vy = randomSpeed(random, 4.0);
+            double omega = randomSpeed(random, 6.0);
+            SwerveModuleState[] states = kinematics.toSwerveModuleStates(new ChassisSpeeds(vx, vy, omega));
+            engine.toModuleStates(vx, vy, omega);
+
+            for (int i = 0; i < layout.length; i++) {
+                double current = randomCurrentAngle(random);
+                SwerveModuleState expected = CTREModuleState.optimize(states[i], Rotation2d.fromDegrees(current));
+                engine.optimize(i, current);
+                double speed = engine.getSpeed(i);
+                double angle = engine.getAngleDegrees(i);
+
+                // Same wheel velocity as asked for, either way around.
+                double radians = Math.toRadians(angle);
+                double wanted = states[i].angle.getRadians();
+                assertEquals(states[i].speedMetersPerSecond * Math.cos(wanted), speed * Math.cos(radians), SPEED_TOLERANCE);
+                assertEquals(states[i].speedMetersPerSecond * Math.sin(wanted), speed * Math.sin(radians), SPEED_TOLERANCE);
+                // Continuous target, never more than a quarter turn from where the module is.
+                assertTrue("moved " + (angle - current), Math.abs(angle - current) <= 90.0 + ANGLE_TOLERANCE);
+
+                // And the object version agrees, away from the exact 90 degree tie where rounding picks a side.
+                if (Math.abs(Math.abs(expected.angle.getDegrees() - current) - 90.0) > 1e-6) {
+                    assertEquals(expected.speedMetersPerSecond, speed, SPEED_TOLERANCE);
+                    assertTrue(angleError(expected.angle.getDegrees(), angle) < ANGLE_TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void forwardKinematicsMatchesWPILib() {
+        Random random = new Random(4650);
+        double[] out = new double[3];
+        for (Translation2d[] layout : LAYOUTS) {
+            SwerveDriveKinematics kinematics = new SwerveDriveKinematics(layout);
+            SwerveKinematicsEngine engine = new SwerveKinematicsEngine(layout);
+            double[] speeds = new double[layout.length];
+            double[] angles = new double[layout.length];
+            SwerveModuleState[] states = new SwerveModuleState[layout.length];
+            for (int n = 0; n < ITERATIONS; n++) {
+                for (int i = 0; i < layout.length; i++) {
+                    speeds[i] = randomSpeed(random, 4.0);
+                    angles[i] = randomCurrentAngle(random);
+                    states[i] = new SwerveModuleState(speeds[i], Rotation2d.fromDegrees(angles[i]));
+                }
+                ChassisSpeeds expected = kinematics.toChassisSpeeds(states);
+                engine.toChassisSpeeds(speeds, angles, out);
+                assertEquals(expected.vxMetersPerSecond, out[0], 1e-9);
+                assertEquals(expected.vyMetersPerSecond, out[1], 1e-9);
+                assertEquals(expected.omegaRadiansPerSecond, out[2], 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package frc.swervelib.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Checks {@link PoseHistory} interpolation, clamping and the window.
+ */
+public class PoseHistoryTest {
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void emptyHistoryHasNothing() {
+        PoseHistory history = new PoseHistory(1.0, 0.02);
+        assertFalse(history.sample(0.0, new double[3]));
+        assertNull(history.getPose(0.0));
+        assertTrue(Double.isNaN(history.getOldestTimestamp()));
+    }
+
+    @Test
+    public void interpolatesBetweenSamples() {
+        PoseHistory history = new PoseHistory(1.0, 0.02);
+        history.addSample(1.00, 0.0, 0.0, 0.0);
+        history.addSample(1.02, 1.0, 2.0, 0.2);
+
+        double[] out = new double[3];
+        assertTrue(history.sample(1.005, out));
+        assertEquals(0.25, out[0], EPSILON);
+        assertEquals(0.5, out[1], EPSILON);
+        assertEquals(0.05, out[2], EPSILON);
+
+        // Exactly on a sample gives that sample.
+        history.sample(1.02, out);
+        assertEquals(1.0, out[0], EPSILON);
+        assertEquals(2.0, out[1], EPSILON);
+    }
+
+    @Test
+    public void interpolatesHeadingTheShortWay() {
+        PoseHistory history = new PoseHistory(1.0, 0.02);
+        history.addSample(1.00, 0.0, 0.0, Math.PI - 0.1);
+        history.addSample(1.02, 0.0, 0.0, -Math.PI + 0.1);
+
+        double[] out = new double[3];
+        history.sample(1.01, out);
+        // Halfway is pointing straight back, not spun round through zero.
+        assertEquals(0.0, Math.IEEEremainder(out[2] - Math.PI, 2 * Math.PI), EPSILON);
+
+        Pose2d pose = history.getPose(1.01);
+        assertEquals(0.0, Math.IEEEremainder(pose.getRotation().getRadians() - Math.PI, 2 * Math.PI), 1e-6);
+    }
+
+    @Test
+    public void straightLinePoseMatchesLinear() {
+        PoseHistory history = new PoseHistory(1.0, 0.02);
+        history.addSample(2.00, new Pose2d(1.0, 1.0, Rotation2d.fromDegrees(30)));
+        history.addSample(2.02, new Pose2d(1.2, 1.4, Rotation2d.fromDegrees(30)));
+
+        Pose2d pose = history.getPose(2.015);
+        assertEquals(1.15, pose.getX(), 1e-6);
+        assertEquals(1.3, pose.getY(), 1e-6);
+        assertEquals(30.0, pose.getRotation().getDegrees(), 1e-6);
+    }
+
+    @Test
+    public void clampsOutsideTheHistory() {
+        PoseHistory history = new PoseHistory(1.0, 0.02);
+        history.addSample(1.00, 1.0, 0.0, 0.0);
+        history.addSample(1.02, 2.0, 0.0, 0.0);
+        history.addSample(1.04, 3.0, 0.0, 0.0);
+
+        double[] out = new double[3];
+        history.sample(0.5, out);
+        assertEquals(1.0, out[0], EPSILON);
+        history.sample(5.0, out);
+        assertEquals(3.0, out[0], EPSILON);
+        assertEquals(1.0, history.getPose(0.5).getX(), EPSILON);
+        assertEquals(3.0, history.getPose(5.0).getX(), EPSILON);
+    }
+
+    @Test
+    public void dropsSamplesOutsideTheWindow() {
+        PoseHistory history = new PoseHistory(0.5, 0.02);
+        for (int i = 0; i <= 150; i++) {
+            history.addSample(i * 0.02, i, 0.0, 0.0);
+        }
+        assertEquals(3.0, history.getNewestTimestamp(), EPSILON);
+        assertTrue(history.getOldestTimestamp() >= 3.0 - 0.5 - EPSILON);
+
+        // Older than the window now clamps to the oldest kept sample.
+        double[] out = new double[3];
+        history.sample(0.0, out);
+        assertEquals(history.getOldestTimestamp() / 0.02, out[0], 1e-6);
+    }
+
+    @Test
+    public void keepsWorkingPastCapacity() {
+        // Added twice as often as it was sized for, the oldest are overwritten but lookups still work.
+        PoseHistory history = new PoseHistory(1.0, 0.02);
+        for (int i = 0; i <= 300; i++) {
+            history.addSample(i * 0.01, i * 0.01, 0.0, 0.0);
+        }
+        double[] out = new double[3];
+        history.sample(2.995, out);
+        assertEquals(2.995, out[0], 1e-9);
+        assertEquals(3.0, history.getNewestTimestamp(), EPSILON);
+    }
+
+    @Test
+    public void ignoresOutOfOrderSamples() {
+        PoseHistory history = new PoseHistory(1.0, 0.02);
+        history.addSample(1.00, 1.0, 0.0, 0.0);
+        history.addSample(1.02, 2.0, 0.0, 0.0);
+        history.addSample(1.01, 99.0, 0.0, 0.0);
+        history.addSample(1.02, 99.0, 0.0, 0.0);
+
+        double[] out = new double[3];
+        history.sample(1.01, out);
+        assertEquals(1.5, out[0], EPSILON);
+        assertEquals(1.02, history.getNewestTimestamp(), EPSILON);
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        PoseHistory history = new PoseHistory(1.0, 0.02);
+        history.addSample(1.00, 1.0, 0.0, 0.0);
+        history.clear();
+        assertFalse(history.sample(1.0, new double[3]));
+
+        // Time can start over after a clear.
+        history.addSample(0.5, 4.0, 0.0, 0.0);
+        assertEquals(0.5, history.getNewestTimestamp(), EPSILON);
+    }
+}